@@ -0,0 +1,189 @@
+package com.hospital.queue.benchmark;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the hot queue lookups on a large history, with the V7/V8/V12 indexes
+ * ("indexed") and with only the original single-column indexes ("baseline").
+ *
+ * Needs a PostgreSQL database, by default hospital_queue_bench on localhost; override with
+ * -Dbenchmark.jdbc.url, -Dbenchmark.jdbc.username and -Dbenchmark.jdbc.password. The schema
+ * is migrated with Flyway and sql/large-history-dataset.sql is loaded on first use.
+ * The plans behind the numbers can be inspected with sql/active-queue-explain.sql.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActiveQueueQueryBenchmark {
+
+    private static final List<String> BASELINE_INDEXES = Arrays.asList(
+            "DROP INDEX IF EXISTS idx_patient_queue_status_order",
+            "DROP INDEX IF EXISTS idx_patient_queue_status_id",
+            "DROP INDEX IF EXISTS idx_patient_active_queue_order",
+            "DROP INDEX IF EXISTS idx_patient_serving_queue",
+            "CREATE INDEX IF NOT EXISTS idx_patient_queue ON patients(queue_id)",
+            "CREATE INDEX IF NOT EXISTS idx_patient_status ON patients(status)");
+
+    // Same statements as the V7, V8 and V12 migrations
+    private static final List<String> OPTIMIZED_INDEXES = Arrays.asList(
+            "CREATE INDEX IF NOT EXISTS idx_patient_queue_status_order ON patients(queue_id, status, order_key)",
+            "CREATE INDEX IF NOT EXISTS idx_patient_queue_status_id ON patients(queue_id, status, id)",
+            "CREATE INDEX IF NOT EXISTS idx_patient_active_queue_order ON patients(queue_id, order_key) " +
+                    "WHERE status IN ('WAITING', 'NOTIFIED', 'SERVING')",
+            "CREATE INDEX IF NOT EXISTS idx_patient_serving_queue ON patients(queue_id) WHERE status = 'SERVING'",
+            "DROP INDEX IF EXISTS idx_patient_queue",
+            "DROP INDEX IF EXISTS idx_patient_status");
+
+    @Param({"indexed", "baseline"})
+    private String indexes;
+
+    private Connection connection;
+    private long[] queueIds;
+    private PreparedStatement activePatients;
+    private PreparedStatement waitingList;
+    private PreparedStatement servingPatient;
+    private PreparedStatement servedHistory;
+    private PreparedStatement statusCounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/hospital_queue_bench");
+        String username = System.getProperty("benchmark.jdbc.username", "postgres");
+        String password = System.getProperty("benchmark.jdbc.password", "");
+
+        Flyway.configure()
+                .dataSource(url, username, password)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+
+        connection = DriverManager.getConnection(url, username, password);
+        queueIds = benchmarkQueueIds();
+        if (queueIds.length == 0) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("sql/large-history-dataset.sql"));
+            queueIds = benchmarkQueueIds();
+        }
+        applyIndexes("baseline".equals(indexes) ? BASELINE_INDEXES : OPTIMIZED_INDEXES);
+
+        // The statements the repositories issue for these lookups
+        activePatients = connection.prepareStatement(
+                "SELECT id, queue_id, status, order_key FROM patients WHERE queue_id = ? AND status IN (?, ?, ?)");
+        waitingList = connection.prepareStatement(
+                "SELECT * FROM patients WHERE queue_id = ? AND status IN (?, ?) ORDER BY order_key");
+        servingPatient = connection.prepareStatement(
+                "SELECT * FROM patients WHERE queue_id = ? AND status = ? ORDER BY order_key");
+        servedHistory = connection.prepareStatement(
+                "SELECT * FROM patients WHERE queue_id = ? AND status = ? ORDER BY id DESC LIMIT 50");
+        statusCounts = connection.prepareStatement(
+                "SELECT status, COUNT(*) FROM patients WHERE queue_id = ? GROUP BY status");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        // Leave the database as the migrations define it
+        applyIndexes(OPTIMIZED_INDEXES);
+        connection.close();
+    }
+
+    @Benchmark
+    public int loadActivePatients() throws SQLException {
+        activePatients.setLong(1, randomQueueId());
+        activePatients.setString(2, "WAITING");
+        activePatients.setString(3, "NOTIFIED");
+        activePatients.setString(4, "SERVING");
+        return count(activePatients);
+    }
+
+    @Benchmark
+    public int waitingList() throws SQLException {
+        waitingList.setLong(1, randomQueueId());
+        waitingList.setString(2, "NOTIFIED");
+        waitingList.setString(3, "WAITING");
+        return count(waitingList);
+    }
+
+    @Benchmark
+    public int servingPatient() throws SQLException {
+        servingPatient.setLong(1, randomQueueId());
+        servingPatient.setString(2, "SERVING");
+        return count(servingPatient);
+    }
+
+    @Benchmark
+    public int servedHistoryPage() throws SQLException {
+        servedHistory.setLong(1, randomQueueId());
+        servedHistory.setString(2, "SERVED");
+        return count(servedHistory);
+    }
+
+    @Benchmark
+    public int statusCounts() throws SQLException {
+        statusCounts.setLong(1, randomQueueId());
+        return count(statusCounts);
+    }
+
+    private long randomQueueId() {
+        return queueIds[ThreadLocalRandom.current().nextInt(queueIds.length)];
+    }
+
+    private int count(PreparedStatement statement) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private long[] benchmarkQueueIds() throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT id FROM queues WHERE qr_code_id LIKE 'BENCH%'")) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getLong(1));
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void applyIndexes(List<String> statements) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+            statement.execute("ANALYZE patients");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.hospital.queue.benchmark;
+
+import com.hospital.queue.QueueApplication;
+import com.hospital.queue.dto.DepartmentDTO;
+import com.hospital.queue.dto.HospitalDTO;
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.QueueDTO;
+import com.hospital.queue.service.DepartmentService;
+import com.hospital.queue.service.HospitalService;
+import com.hospital.queue.service.PatientService;
+import com.hospital.queue.service.QueueService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Runs the whole application against H2 for the duration of a benchmark trial
+ * and provides helpers for seeding queues and patients.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    private ConfigurableApplicationContext context;
+    private Long departmentId;
+    private int queueCounter;
+
+    PatientService patientService;
+    QueueService queueService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(QueueApplication.class)
+                .profiles("benchmark")
+                .run();
+        patientService = context.getBean(PatientService.class);
+        queueService = context.getBean(QueueService.class);
+
+        HospitalDTO hospital = new HospitalDTO();
+        hospital.setName("Benchmark Hospital");
+        Long hospitalId = context.getBean(HospitalService.class).createHospital(hospital).getId();
+
+        DepartmentDTO department = new DepartmentDTO();
+        department.setName("Benchmark Department");
+        department.setHospitalId(hospitalId);
+        departmentId = context.getBean(DepartmentService.class).createDepartment(department).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    Long createQueue() {
+        QueueDTO queue = new QueueDTO();
+        queue.setName("Benchmark Queue " + (++queueCounter));
+        queue.setDepartmentId(departmentId);
+        return queueService.createQueue(queue).getId();
+    }
+
+    PatientDTO registerPatient(Long queueId) {
+        PatientDTO patient = new PatientDTO();
+        patient.setName("Benchmark Patient");
+        patient.setPhoneNumber("+10000000000");
+        patient.setQueueId(queueId);
+        return patientService.registerPatient(patient);
+    }
+}
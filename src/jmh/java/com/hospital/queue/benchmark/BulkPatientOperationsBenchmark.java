@@ -0,0 +1,143 @@
+package com.hospital.queue.benchmark;
+
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.Queue;
+import com.hospital.queue.repository.PatientRepository;
+import com.hospital.queue.repository.QueueRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and SQL statements per bulk patient operation.
+ *
+ * The statements prepared by Hibernate are reported as the secondary "statements" result.
+ * A JDBC batch counts as one statement, so batchSize=1 shows the per-row cost the
+ * application had before batching, and deleteQueuePerRow replays the old delete that
+ * loaded every patient and removed them one by one.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkPatientOperationsBenchmark {
+
+    @Param({"100", "1000"})
+    public int patients;
+
+    @Param({"1", "50"})
+    public int batchSize;
+
+    private Statistics statistics;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private PatientRepository patientRepository;
+    private QueueRepository queueRepository;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        EntityManagerFactory entityManagerFactory = application.getBean(EntityManagerFactory.class);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        transactionTemplate = new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        patientRepository = application.getBean(PatientRepository.class);
+        queueRepository = application.getBean(QueueRepository.class);
+    }
+
+    @Benchmark
+    public void insertPatients(EmptyQueue queue, Statements statements) {
+        inTransaction(statements, () -> patientRepository.saveAll(newPatients(queue.queueId)));
+    }
+
+    @Benchmark
+    public void deleteQueue(ApplicationState application, FilledQueue queue, Statements statements) {
+        inTransaction(statements, () -> application.queueService.deleteQueue(queue.queueId));
+    }
+
+    @Benchmark
+    public void deleteQueuePerRow(FilledQueue queue, Statements statements) {
+        inTransaction(statements, () -> {
+            patientRepository.deleteAll(patientRepository.findByQueueIdOrderByQueuePosition(queue.queueId));
+            queueRepository.deleteById(queue.queueId);
+        });
+    }
+
+    private void inTransaction(Statements statements, Runnable operation) {
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            operation.run();
+        });
+        statements.statements += statistics.getPrepareStatementCount();
+    }
+
+    private List<Patient> newPatients(Long queueId) {
+        Queue queue = queueRepository.getReferenceById(queueId);
+        List<Patient> batch = new ArrayList<>(patients);
+        for (int i = 1; i <= patients; i++) {
+            Patient patient = new Patient();
+            patient.setName("Benchmark Patient " + i);
+            patient.setPhoneNumber("+10000000000");
+            patient.setQueue(queue);
+            patient.setQueuePosition(i);
+            batch.add(patient);
+        }
+        return batch;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+
+        public long statements;
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyQueue {
+
+        private Long queueId;
+
+        @Setup(Level.Invocation)
+        public void createQueue(ApplicationState application) {
+            queueId = application.createQueue();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FilledQueue {
+
+        private Long queueId;
+
+        @Setup(Level.Invocation)
+        public void createQueue(ApplicationState application, BulkPatientOperationsBenchmark benchmark) {
+            queueId = application.createQueue();
+            benchmark.transactionTemplate.executeWithoutResult(status ->
+                    benchmark.patientRepository.saveAll(benchmark.newPatients(queueId)));
+        }
+    }
+}
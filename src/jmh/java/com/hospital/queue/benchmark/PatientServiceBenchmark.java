@@ -0,0 +1,74 @@
+package com.hospital.queue.benchmark;
+
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.PatientStatusUpdateDTO;
+import com.hospital.queue.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of patient registration and of serving the next patient in line.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatientServiceBenchmark {
+
+    private Long queueId;
+
+    @Setup(Level.Iteration)
+    public void createQueue(ApplicationState application) {
+        // A fresh queue per iteration keeps queue sizes comparable between iterations
+        queueId = application.createQueue();
+    }
+
+    @Benchmark
+    public PatientDTO registerPatient(ApplicationState application) {
+        return application.registerPatient(queueId);
+    }
+
+    /**
+     * One full serve cycle: call the next patient and mark them served, so the
+     * next invocation again finds nobody at the counter.
+     */
+    @Benchmark
+    public PatientDTO callNextPatient(ApplicationState application, WaitingPatient waiting) {
+        PatientDTO next = application.patientService.callNextPatient(waiting.queueId);
+        PatientStatusUpdateDTO served = new PatientStatusUpdateDTO();
+        served.setStatus(Patient.PatientStatus.SERVED);
+        return application.patientService.updatePatientStatus(next.getId(), served);
+    }
+
+    /**
+     * Guarantees a waiting patient before every call without counting the registration.
+     */
+    @State(Scope.Thread)
+    public static class WaitingPatient {
+
+        private Long queueId;
+
+        @Setup(Level.Iteration)
+        public void createQueue(ApplicationState application) {
+            queueId = application.createQueue();
+        }
+
+        @Setup(Level.Invocation)
+        public void register(ApplicationState application) {
+            application.registerPatient(queueId);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.hospital.queue.benchmark;
+
+import com.google.zxing.WriterException;
+import com.hospital.queue.service.QRCodeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QR code rendering, both on a cache hit and when every code is new.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class QRCodeServiceBenchmark {
+
+    private QRCodeService qrCodeService;
+    private String cachedQrCodeId;
+
+    @Setup
+    public void setUp() {
+        qrCodeService = new QRCodeService(256);
+        ReflectionTestUtils.setField(qrCodeService, "frontendUrl", "http://localhost:3000");
+        cachedQrCodeId = qrCodeService.generateQRCodeId();
+    }
+
+    @Benchmark
+    public String generateQRCodeImageCached() throws WriterException, IOException {
+        return qrCodeService.generateQRCodeImage(cachedQrCodeId, 250, 250);
+    }
+
+    @Benchmark
+    public String generateQRCodeImageUncached() throws WriterException, IOException {
+        return qrCodeService.generateQRCodeImage(qrCodeService.generateQRCodeId(), 250, 250);
+    }
+}
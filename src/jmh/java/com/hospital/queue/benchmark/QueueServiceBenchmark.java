@@ -0,0 +1,52 @@
+package com.hospital.queue.benchmark;
+
+import com.hospital.queue.dto.QueueDetailsDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the queue details snapshot for queues of different sizes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueServiceBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int patients;
+
+    private Long queueId;
+
+    @Setup(Level.Trial)
+    public void seed(ApplicationState application) {
+        queueId = application.createQueue();
+        for (int i = 0; i < patients; i++) {
+            application.registerPatient(queueId);
+        }
+    }
+
+    @Benchmark
+    public QueueDetailsDTO getQueueDetails(ApplicationState application) {
+        return application.queueService.getQueueDetails(queueId, false);
+    }
+
+    @Benchmark
+    public QueueDetailsDTO getQueueDetailsWithQrCode(ApplicationState application) {
+        return application.queueService.getQueueDetails(queueId, true);
+    }
+}
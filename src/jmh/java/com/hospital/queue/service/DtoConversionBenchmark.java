@@ -0,0 +1,84 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.NotificationDTO;
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.QueueDTO;
+import com.hospital.queue.model.Department;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.Queue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO conversions, without any database access.
+ * Lives in the service package because the converters are package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DtoConversionBenchmark {
+
+    private PatientService patientService;
+    private QueueService queueService;
+    private NotificationService notificationService;
+    private Patient patient;
+    private Queue queue;
+
+    @Setup
+    public void setUp() {
+        // The converters do not touch any collaborator
+        patientService = new PatientService(null, null, null, null, null, null, null, null, null);
+        queueService = new QueueService(null, null, null, null, null, null, null);
+        notificationService = new NotificationService(null, null);
+
+        Department department = new Department();
+        department.setId(1L);
+        department.setName("Cardiology");
+
+        queue = new Queue();
+        queue.setId(1L);
+        queue.setName("General Checkup");
+        queue.setDescription("Walk-in patients");
+        queue.setQrCodeId("6f1c2d3e-4a5b-6c7d-8e9f-0a1b2c3d4e5f");
+        queue.setDepartment(department);
+
+        patient = new Patient();
+        patient.setId(1L);
+        patient.setName("Jane Doe");
+        patient.setPhoneNumber("+10000000000");
+        patient.setEmail("jane@example.com");
+        patient.setQueue(queue);
+        patient.setStatus(Patient.PatientStatus.WAITING);
+        patient.setQueuePosition(42);
+        patient.setJoinedAt(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public PatientDTO patientToDto() {
+        return patientService.convertToDTO(patient);
+    }
+
+    @Benchmark
+    public QueueDTO queueToDto() {
+        return queueService.convertToDTO(queue);
+    }
+
+    @Benchmark
+    public NotificationDTO patientToNotification() {
+        return notificationService.buildNotification(patient);
+    }
+}
@@ -0,0 +1,36 @@
+-- Query plans of the hot queue lookups on the large history dataset (PostgreSQL).
+--   psql -d hospital_queue_bench -v queue_id=<id of a BENCH queue> -f active-queue-explain.sql
+-- With the V7/V8/V12 indexes the active lookups and the history page read a handful of index
+-- pages and the counts become an index-only scan. With only the V1 single-column indexes
+-- every query visits all 100,000 rows of the queue.
+
+-- Queue engine load (QueueEngine.state / PatientRepository.findActiveByQueueIdAndStatusIn)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, queue_id, status, order_key FROM patients
+WHERE queue_id = :queue_id AND status IN ('WAITING', 'NOTIFIED', 'SERVING');
+
+-- Waiting list of the queue details (findByQueueIdAndStatusInOrderByOrderKey)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM patients
+WHERE queue_id = :queue_id AND status IN ('NOTIFIED', 'WAITING')
+ORDER BY order_key;
+
+-- Patients being served (findWithCounterByQueueIdAndStatusOrderByOrderKey with SERVING)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM patients p
+LEFT JOIN service_counters c ON c.id = p.counter_id
+WHERE p.queue_id = :queue_id AND p.status = 'SERVING'
+ORDER BY p.order_key;
+
+-- First page of served history (findByQueueIdAndStatusOrderByIdDesc)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM patients
+WHERE queue_id = :queue_id AND status = 'SERVED'
+ORDER BY id DESC
+LIMIT 50;
+
+-- Status counts (countByQueueIdGroupByStatus)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT status, COUNT(*) FROM patients
+WHERE queue_id = :queue_id
+GROUP BY status;
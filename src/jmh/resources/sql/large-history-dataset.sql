@@ -0,0 +1,42 @@
+-- Large historical dataset for the active queue query benchmarks (PostgreSQL).
+-- Adds 20 queues with 100,000 served or cancelled patients each and a short active tail
+-- of 25 waiting, 2 notified and 1 serving patient. Apply on top of the Flyway schema:
+--   psql -d hospital_queue_bench -f large-history-dataset.sql
+-- ActiveQueueQueryBenchmark loads it automatically when the benchmark queues are missing.
+
+INSERT INTO queues (name, description, department_id, qr_code_id, created_at, updated_at)
+SELECT 'Benchmark Queue ' || g, 'Queue with a large history', (SELECT MIN(id) FROM departments),
+       'BENCH' || g, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+FROM generate_series(1, 20) AS g
+ON CONFLICT (qr_code_id) DO NOTHING;
+
+-- History: every 20th patient cancelled, the rest served
+INSERT INTO patients (name, phone_number, queue_id, status, queue_position, order_key, joined_at, served_at)
+SELECT 'Patient ' || g, '+10000000000', q.id,
+       CASE WHEN g % 20 = 0 THEN 'CANCELLED' ELSE 'SERVED' END,
+       g,
+       g::BIGINT * 1024,
+       CURRENT_TIMESTAMP - make_interval(secs => 100000 - g + 3600),
+       CASE WHEN g % 20 = 0 THEN NULL ELSE CURRENT_TIMESTAMP - make_interval(secs => 100000 - g) END
+FROM queues q
+CROSS JOIN generate_series(1, 100000) AS g
+WHERE q.qr_code_id LIKE 'BENCH%';
+
+-- Active tail: one serving, two notified, then the waiting patients
+INSERT INTO patients (name, phone_number, queue_id, status, queue_position, order_key, joined_at, notified_at)
+SELECT 'Patient ' || (100000 + g), '+10000000000', q.id,
+       CASE WHEN g = 1 THEN 'SERVING' WHEN g <= 3 THEN 'NOTIFIED' ELSE 'WAITING' END,
+       100000 + g,
+       (100000 + g)::BIGINT * 1024,
+       CURRENT_TIMESTAMP - make_interval(secs => 60 - g),
+       CASE WHEN g BETWEEN 2 AND 3 THEN CURRENT_TIMESTAMP END
+FROM queues q
+CROSS JOIN generate_series(1, 28) AS g
+WHERE q.qr_code_id LIKE 'BENCH%';
+
+UPDATE queues q
+SET next_position = (SELECT MAX(p.queue_position) + 1 FROM patients p WHERE p.queue_id = q.id)
+WHERE q.qr_code_id LIKE 'BENCH%';
+
+ANALYZE patients;
+ANALYZE queues;
@@ -0,0 +1,143 @@
+package com.hospital.queue.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends CBOR instead of JSON to the sessions that asked for compact frames.
+ *
+ * Clients opt in by opening the native WebSocket endpoint with {@code ?encoding=cbor};
+ * SockJS cannot carry binary frames, so its sessions always get JSON. Compact messages
+ * go out as binary frames with {@code content-type:application/octet-stream} and
+ * {@code payload-encoding:cbor}. A broadcast hands the same payload to every subscriber,
+ * so the last conversion is reused instead of converting once per session.
+ */
+@Component
+public class CompactFrameInterceptor implements ChannelInterceptor, HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactFrameInterceptor.class);
+
+    public static final String CBOR = "cbor";
+    static final String ENCODING_ATTRIBUTE = "payloadEncoding";
+    static final String ENCODING_HEADER = "payload-encoding";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+    private final Set<String> compactSessions = ConcurrentHashMap.newKeySet();
+    private volatile Conversion lastConversion;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String encoding = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("encoding");
+        if (CBOR.equalsIgnoreCase(encoding)) {
+            attributes.put(ENCODING_ATTRIBUTE, CBOR);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) {
+            return message;
+        }
+
+        switch (type) {
+            case CONNECT:
+                Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+                if (attributes != null && CBOR.equals(attributes.get(ENCODING_ATTRIBUTE))) {
+                    compactSessions.add(sessionId);
+                }
+                return message;
+            case DISCONNECT:
+                compactSessions.remove(sessionId);
+                return message;
+            case MESSAGE:
+                return compactSessions.contains(sessionId) ? toCbor(message) : message;
+            default:
+                return message;
+        }
+    }
+
+    private Message<?> toCbor(Message<?> message) {
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        MimeType mimeType = contentType instanceof String ? MimeTypeUtils.parseMimeType((String) contentType) : (MimeType) contentType;
+        if (!(message.getPayload() instanceof byte[]) || mimeType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+            return message;
+        }
+
+        byte[] cbor;
+        try {
+            cbor = encode((byte[]) message.getPayload());
+        } catch (IOException e) {
+            logger.warn("Could not encode message as CBOR, sending JSON: {}", e.getMessage());
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        // Only octet-stream payloads are sent as binary WebSocket frames
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(ENCODING_HEADER, CBOR);
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    private byte[] encode(byte[] json) throws IOException {
+        Conversion last = lastConversion;
+        if (last != null && last.json == json) {
+            return last.cbor;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = cborFactory.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+        byte[] cbor = out.toByteArray();
+        lastConversion = new Conversion(json, cbor);
+        return cbor;
+    }
+
+    private static final class Conversion {
+        private final byte[] json;
+        private final byte[] cbor;
+
+        private Conversion(byte[] json, byte[] cbor) {
+            this.json = json;
+            this.cbor = cbor;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.hospital.queue.config;
+
+import com.hospital.queue.service.PatientSessionTokenService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ties WebSocket sessions to patients.
+ *
+ * A CONNECT frame with a valid {@code patient-token} header makes the session belong to
+ * that patient, so the user registry finds it directly for messages sent to
+ * {@code /user/{patientId}/queue/notifications} instead of the broker matching the
+ * destination against every subscription. Connections without a token, such as display
+ * boards and staff screens, stay anonymous and only see queue topics. Subscriptions must
+ * go through {@code /user/queue/...}; subscribing to the resolved {@code /queue}
+ * destinations directly is refused.
+ */
+@Component
+public class PatientSessionInterceptor implements ChannelInterceptor {
+
+    static final String TOKEN_HEADER = "patient-token";
+
+    private final PatientSessionTokenService sessionTokens;
+
+    public PatientSessionInterceptor(PatientSessionTokenService sessionTokens) {
+        this.sessionTokens = sessionTokens;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+
+        if (accessor.getMessageType() == SimpMessageType.CONNECT) {
+            String token = accessor.getFirstNativeHeader(TOKEN_HEADER);
+            if (token != null) {
+                Long patientId = sessionTokens.verify(token);
+                if (patientId == null) {
+                    throw new MessagingException("Invalid or expired patient token");
+                }
+                // The user name is the patient id notifications are addressed to
+                accessor.setUser(patientId::toString);
+            }
+        } else if (accessor.getMessageType() == SimpMessageType.SUBSCRIBE) {
+            String destination = accessor.getDestination();
+            if (destination != null && destination.startsWith("/queue/")) {
+                throw new MessagingException("Subscribe to /user" + destination + " instead of " + destination);
+            }
+        }
+        return message;
+    }
+}
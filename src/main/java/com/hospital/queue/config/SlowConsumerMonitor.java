@@ -0,0 +1,165 @@
+package com.hospital.queue.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks how many messages are queued for each WebSocket session and deals with the
+ * sessions that fall behind.
+ *
+ * A message counts as queued from the moment it enters the client outbound channel until
+ * it has been written to the socket, so the depth covers both the outbound executor and
+ * the per-session send buffer. Once a session has {@code max-queue-depth} messages queued,
+ * the {@code evict} policy closes it and the {@code drop} policy discards further
+ * messages until it catches up. Clients resync from the version gap either way.
+ */
+@Component
+public class SlowConsumerMonitor implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerMonitor.class);
+
+    enum Policy {
+        EVICT,
+        DROP
+    }
+
+    private final Map<String, TrackedSession> sessions = new ConcurrentHashMap<>();
+    private final int maxQueueDepth;
+    private final Policy policy;
+
+    private final DistributionSummary queueDepthSummary;
+    private final Counter evictedCounter;
+    private final Counter droppedCounter;
+
+    public SlowConsumerMonitor(MeterRegistry meterRegistry,
+                               @Value("${app.websocket.slow-consumer.max-queue-depth:500}") int maxQueueDepth,
+                               @Value("${app.websocket.slow-consumer.policy:evict}") String policy) {
+        this.maxQueueDepth = maxQueueDepth;
+        this.policy = Policy.valueOf(policy.toUpperCase(Locale.ROOT));
+        this.queueDepthSummary = DistributionSummary.builder("websocket.session.queue.depth")
+                .description("Messages queued for a session, sampled as each message is queued")
+                .register(meterRegistry);
+        this.evictedCounter = meterRegistry.counter("websocket.sessions.evicted");
+        this.droppedCounter = meterRegistry.counter("websocket.messages.dropped");
+        meterRegistry.gauge("websocket.sessions.queue.depth.max", this, SlowConsumerMonitor::maxSessionQueueDepth);
+        meterRegistry.gauge("websocket.sessions.slow", this, SlowConsumerMonitor::slowSessions);
+        meterRegistry.gaugeMapSize("websocket.sessions", Tags.empty(), sessions);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                TrackedSession tracked = new TrackedSession(session);
+                sessions.put(session.getId(), tracked);
+                super.afterConnectionEstablished(tracked);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        TrackedSession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session == null) {
+            return message;
+        }
+
+        // Frames other than broker messages (CONNECTED, receipts, errors) always go through
+        if (session.depth.get() >= maxQueueDepth
+                && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+            if (policy == Policy.DROP) {
+                droppedCounter.increment();
+            } else {
+                evict(session);
+            }
+            return null;
+        }
+
+        queueDepthSummary.record(session.depth.incrementAndGet());
+        return message;
+    }
+
+    /**
+     * Highest number of messages currently queued for a single session.
+     */
+    public int maxSessionQueueDepth() {
+        int max = 0;
+        for (TrackedSession session : sessions.values()) {
+            max = Math.max(max, session.depth.get());
+        }
+        return max;
+    }
+
+    /**
+     * Number of sessions that currently have the maximum queue depth or more.
+     */
+    public long slowSessions() {
+        return sessions.values().stream().filter(session -> session.depth.get() >= maxQueueDepth).count();
+    }
+
+    private void evict(TrackedSession session) {
+        if (sessions.remove(session.getId()) == null) {
+            // Already evicted by another thread
+            return;
+        }
+
+        evictedCounter.increment();
+        logger.warn("Closing WebSocket session {} with {} messages queued", session.getId(), session.depth.get());
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            logger.debug("Closing WebSocket session {} failed: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    // Counts a message as delivered once it has been written to the socket
+    private static final class TrackedSession extends WebSocketSessionDecorator {
+        private final AtomicInteger depth = new AtomicInteger();
+
+        private TrackedSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                super.sendMessage(message);
+            } finally {
+                // Frames the server sends on its own, such as STOMP errors, were never counted
+                depth.updateAndGet(current -> current > 0 ? current - 1 : 0);
+            }
+        }
+    }
+}
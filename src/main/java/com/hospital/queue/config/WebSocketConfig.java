@@ -3,10 +3,13 @@ package com.hospital.queue.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 @Configuration
@@ -15,11 +18,94 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Value("${app.frontend.url:http://localhost:3000}")
     private String frontendUrl;
+
+    // Threads handling client frames (inbound) and writing broker messages to sessions (outbound)
+    @Value("${app.websocket.inbound.core-pool-size:4}")
+    private int inboundCorePoolSize;
+
+    @Value("${app.websocket.inbound.max-pool-size:8}")
+    private int inboundMaxPoolSize;
+
+    @Value("${app.websocket.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${app.websocket.outbound.max-pool-size:16}")
+    private int outboundMaxPoolSize;
+
+    @Value("${app.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    // A session whose pending sends exceed either limit is closed by Spring's session decorator
+    @Value("${app.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${app.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    // Each patient session subscribes to a destination of its own; keep them all cached
+    @Value("${app.websocket.destination-cache-limit:10000}")
+    private int destinationCacheLimit;
+
+    private final CompactFrameInterceptor compactFrameInterceptor;
+    private final SlowConsumerMonitor slowConsumerMonitor;
+    private final PatientSessionInterceptor patientSessionInterceptor;
+
+    // "simple" keeps subscriptions in this node's memory, "relay" hands them to an external STOMP broker
+    @Value("${app.websocket.broker:simple}")
+    private String brokerMode;
+
+    @Value("${app.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${app.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${app.websocket.relay.virtual-host:}")
+    private String relayVirtualHost;
+    
+    public WebSocketConfig(CompactFrameInterceptor compactFrameInterceptor,
+                           SlowConsumerMonitor slowConsumerMonitor,
+                           PatientSessionInterceptor patientSessionInterceptor) {
+        this.compactFrameInterceptor = compactFrameInterceptor;
+        this.slowConsumerMonitor = slowConsumerMonitor;
+        this.patientSessionInterceptor = patientSessionInterceptor;
+    }
     
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // The broker fans every message out to the subscribers of all nodes
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    // Patient messages published on a node the patient is not connected to are passed on
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isEmpty()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+        } else if ("simple".equalsIgnoreCase(brokerMode)) {
+            config.enableSimpleBroker("/topic", "/queue");
+        } else {
+            throw new IllegalStateException("Unknown app.websocket.broker: " + brokerMode);
+        }
         config.setApplicationDestinationPrefixes("/app");
+        // Messages for one patient go to /user/{patientId}/queue/..., see PatientSessionInterceptor
+        config.setUserDestinationPrefix("/user");
+        config.setCacheLimit(destinationCacheLimit);
     }
 
     @Override
@@ -28,12 +114,42 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         System.out.println("WebSocket configured with frontend URL: " + frontendUrl);
         
         // Allow connections from both the configured frontend URL and the Render.com frontend
+        String[] allowedOrigins = {frontendUrl, "https://hospital-queue-frontend.onrender.com"};
         registry.addEndpoint("/ws")
-                .setAllowedOrigins(
-                    frontendUrl,
-                    "https://hospital-queue-frontend.onrender.com"
-                )
+                .setAllowedOrigins(allowedOrigins)
                 .withSockJS();
+
+        // Plain WebSocket without SockJS framing, for clients that do not need the fallbacks;
+        // ?encoding=cbor switches the session to compact binary frames
+        registry.addEndpoint("/ws-native")
+                .setAllowedOrigins(allowedOrigins)
+                .addInterceptors(compactFrameInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMillis)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .addDecoratorFactory(slowConsumerMonitor);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+        registration.interceptors(patientSessionInterceptor, compactFrameInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        // Slow sessions are dealt with before any effort goes into encoding their messages
+        registration.interceptors(slowConsumerMonitor, compactFrameInterceptor);
     }
     
     // Configure WebSocket buffer sizes and timeouts for better stability
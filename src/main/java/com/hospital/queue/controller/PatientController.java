@@ -1,14 +1,24 @@
 package com.hospital.queue.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.queue.dto.BulkRegistrationDTO;
 import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.PatientMoveDTO;
 import com.hospital.queue.dto.PatientQueuePositionUpdateDTO;
 import com.hospital.queue.dto.PatientStatusUpdateDTO;
+import com.hospital.queue.service.PatientOrderService;
 import com.hospital.queue.service.PatientService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -16,15 +26,54 @@ import java.util.List;
 // CORS is configured globally in WebConfig
 public class PatientController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final PatientService patientService;
+    private final PatientOrderService patientOrderService;
+    private final ObjectMapper objectMapper;
     
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, PatientOrderService patientOrderService, ObjectMapper objectMapper) {
         this.patientService = patientService;
+        this.patientOrderService = patientOrderService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Get a page of patients. Pass the id of the last patient returned as afterId to get the next page.
+     */
     @GetMapping
-    public ResponseEntity<List<PatientDTO>> getAllPatients() {
-        return ResponseEntity.ok(patientService.getAllPatients());
+    public ResponseEntity<List<PatientDTO>> getAllPatients(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "" + PatientService.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeHistory) {
+        return ResponseEntity.ok(patientService.getPatients(afterId, limit, includeHistory));
+    }
+
+    /**
+     * Stream every patient as newline delimited JSON, one patient per line, for reporting.
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportPatients(
+            @RequestParam(defaultValue = "false") boolean includeHistory) {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            try {
+                patientService.exportPatients(includeHistory, patient -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(patient));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -38,6 +87,16 @@ public class PatientController {
         return new ResponseEntity<>(registeredPatient, HttpStatus.CREATED);
     }
 
+    /**
+     * Register many patients at once, for appointment imports and offline kiosks.
+     * Either every patient is registered or none is.
+     */
+    @PostMapping("/register/bulk")
+    public ResponseEntity<List<PatientDTO>> registerPatients(@Valid @RequestBody BulkRegistrationDTO registration) {
+        List<PatientDTO> registeredPatients = patientService.registerPatients(registration.getPatients());
+        return new ResponseEntity<>(registeredPatients, HttpStatus.CREATED);
+    }
+
     @PatchMapping("/{id}/status")
     public ResponseEntity<PatientDTO> updatePatientStatus(
             @PathVariable Long id,
@@ -45,10 +104,23 @@ public class PatientController {
         return ResponseEntity.ok(patientService.updatePatientStatus(id, statusUpdateDTO));
     }
     
+    /**
+     * Move a waiting patient to the given place among the waiting patients of its queue.
+     */
     @PatchMapping("/{id}/position")
     public ResponseEntity<PatientDTO> updatePatientQueuePosition(
             @PathVariable Long id,
             @Valid @RequestBody PatientQueuePositionUpdateDTO positionUpdateDTO) {
-        return ResponseEntity.ok(patientService.updatePatientQueuePosition(id, positionUpdateDTO.getQueuePosition()));
+        return ResponseEntity.ok(patientOrderService.movePatientToPosition(id, positionUpdateDTO.getQueuePosition()));
+    }
+    
+    /**
+     * Move a waiting patient directly before or after another waiting patient of the same queue.
+     */
+    @PostMapping("/{id}/move")
+    public ResponseEntity<PatientDTO> movePatient(
+            @PathVariable Long id,
+            @RequestBody PatientMoveDTO moveDTO) {
+        return ResponseEntity.ok(patientOrderService.movePatient(id, moveDTO));
     }
 }
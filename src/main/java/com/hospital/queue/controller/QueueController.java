@@ -2,13 +2,20 @@ package com.hospital.queue.controller;
 
 import com.hospital.queue.dto.QueueDTO;
 import com.hospital.queue.dto.QueueDetailsDTO;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.service.QRCodeService;
 import com.hospital.queue.service.QueueService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/queues")
@@ -22,8 +29,10 @@ public class QueueController {
     }
 
     @GetMapping
-    public ResponseEntity<List<QueueDTO>> getAllQueues() {
-        return ResponseEntity.ok(queueService.getAllQueues());
+    public ResponseEntity<List<QueueDTO>> getAllQueues(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "" + QueueService.DEFAULT_PAGE_SIZE) int limit) {
+        return ResponseEntity.ok(queueService.getQueues(afterId, limit));
     }
 
     @GetMapping("/department/{departmentId}")
@@ -31,9 +40,66 @@ public class QueueController {
         return ResponseEntity.ok(queueService.getQueuesByDepartment(departmentId));
     }
 
+    /**
+     * Queue details, optionally limited to some statuses (e.g. ?status=WAITING&status=SERVING).
+     * Served and cancelled history is paged; pass the returned next cursors to get older patients.
+     * Archived patients are only included with includeHistory=true.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<QueueDetailsDTO> getQueueDetails(@PathVariable Long id) {
-        return ResponseEntity.ok(queueService.getQueueDetails(id));
+    public ResponseEntity<QueueDetailsDTO> getQueueDetails(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "false") boolean includeQrCode,
+            @RequestParam(name = "status", required = false) Set<Patient.PatientStatus> statuses,
+            @RequestParam(required = false) Long servedBefore,
+            @RequestParam(required = false) Long cancelledBefore,
+            @RequestParam(defaultValue = "" + QueueService.DEFAULT_HISTORY_LIMIT) int historyLimit,
+            @RequestParam(defaultValue = "false") boolean includeHistory) {
+        return ResponseEntity.ok(queueService.getQueueDetails(
+                id, includeQrCode, statuses, servedBefore, cancelledBefore, historyLimit, includeHistory));
+    }
+
+    /**
+     * QR code as a cacheable PNG; the image never changes for a queue, so clients
+     * revalidate with If-None-Match and get a 304 without any encoding work.
+     */
+    @GetMapping(value = "/{id}/qr-code.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getQueueQRCode(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "250") int width,
+            @RequestParam(defaultValue = "250") int height,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        QRCodeService.QRCodeImage image = queueService.getQueueQRCode(id, width, height);
+        CacheControl cacheControl = CacheControl.maxAge(30, TimeUnit.DAYS).cachePublic();
+        
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, image.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(image.getETag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        
+        return ResponseEntity.ok()
+                .eTag(image.getETag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.IMAGE_PNG)
+                .body(image.getPng());
+    }
+
+    // If-None-Match holds "*" or a comma-separated list of tags, compared with the weak comparison
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            if (stripWeakPrefix(candidate.trim()).equals(stripWeakPrefix(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
     }
 
     @PostMapping
@@ -0,0 +1,66 @@
+package com.hospital.queue.controller;
+
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.ServiceCounterDTO;
+import com.hospital.queue.service.PatientService;
+import com.hospital.queue.service.ServiceCounterService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/queues/{queueId}/counters")
+// CORS is configured globally in WebConfig
+public class ServiceCounterController {
+
+    private final ServiceCounterService counterService;
+    private final PatientService patientService;
+
+    public ServiceCounterController(ServiceCounterService counterService, PatientService patientService) {
+        this.counterService = counterService;
+        this.patientService = patientService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ServiceCounterDTO>> getCounters(@PathVariable Long queueId) {
+        return ResponseEntity.ok(counterService.getCounters(queueId));
+    }
+
+    @PostMapping
+    public ResponseEntity<ServiceCounterDTO> createCounter(
+            @PathVariable Long queueId,
+            @Valid @RequestBody ServiceCounterDTO counterDTO) {
+        ServiceCounterDTO createdCounter = counterService.createCounter(queueId, counterDTO);
+        return new ResponseEntity<>(createdCounter, HttpStatus.CREATED);
+    }
+
+    @PutMapping("/{counterId}")
+    public ResponseEntity<ServiceCounterDTO> updateCounter(
+            @PathVariable Long queueId,
+            @PathVariable Long counterId,
+            @Valid @RequestBody ServiceCounterDTO counterDTO) {
+        return ResponseEntity.ok(counterService.updateCounter(queueId, counterId, counterDTO));
+    }
+
+    @DeleteMapping("/{counterId}")
+    public ResponseEntity<Void> deleteCounter(@PathVariable Long queueId, @PathVariable Long counterId) {
+        counterService.deleteCounter(queueId, counterId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Call the next waiting patient to this counter. Returns 204 when the counter is still
+     * serving a patient or nobody is waiting.
+     */
+    @PostMapping("/{counterId}/call-next")
+    public ResponseEntity<PatientDTO> callNextPatient(@PathVariable Long queueId, @PathVariable Long counterId) {
+        PatientDTO patient = patientService.callNextPatient(queueId, counterId);
+        if (patient == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(patient);
+    }
+}
@@ -0,0 +1,33 @@
+package com.hospital.queue.dto;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class BulkRegistrationDTO {
+    
+    public static final int MAX_PATIENTS = 1000;
+    
+    @NotEmpty(message = "At least one patient is required")
+    @Size(max = MAX_PATIENTS, message = "At most " + MAX_PATIENTS + " patients can be registered at once")
+    @Valid
+    private List<PatientDTO> patients = new ArrayList<>();
+    
+    public BulkRegistrationDTO() {
+    }
+    
+    public BulkRegistrationDTO(List<PatientDTO> patients) {
+        this.patients = patients;
+    }
+    
+    public List<PatientDTO> getPatients() {
+        return patients;
+    }
+    
+    public void setPatients(List<PatientDTO> patients) {
+        this.patients = patients;
+    }
+}
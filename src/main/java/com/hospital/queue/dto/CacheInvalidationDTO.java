@@ -0,0 +1,44 @@
+package com.hospital.queue.dto;
+
+/**
+ * Tells the other nodes that an entry of a per-node cache changed in the database.
+ *
+ * Sent over the message backplane and published on the receiving node as an application
+ * event. A null id stands for every entry of the cache.
+ */
+public class CacheInvalidationDTO {
+
+    public enum Cache {
+        // QueueEngine state, keyed by queue ID
+        QUEUE_ENGINE,
+        // DeviceTokenCache entries, keyed by patient ID
+        DEVICE_TOKENS
+    }
+
+    private Cache cache;
+    private Long id;
+
+    public CacheInvalidationDTO() {
+    }
+
+    public CacheInvalidationDTO(Cache cache, Long id) {
+        this.cache = cache;
+        this.id = id;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
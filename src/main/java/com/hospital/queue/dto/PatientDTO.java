@@ -33,6 +33,14 @@ public class PatientDTO {
     
     private LocalDateTime notifiedAt;
     
+    // Counter the patient is called to, when the queue has several
+    private Long counterId;
+    
+    private String counterName;
+    
+    // Presented as the patient-token header on WebSocket CONNECT; only returned on registration
+    private String sessionToken;
+    
     public PatientDTO() {
     }
     
@@ -146,4 +154,28 @@ public class PatientDTO {
     public void setNotifiedAt(LocalDateTime notifiedAt) {
         this.notifiedAt = notifiedAt;
     }
+    
+    public Long getCounterId() {
+        return counterId;
+    }
+    
+    public void setCounterId(Long counterId) {
+        this.counterId = counterId;
+    }
+    
+    public String getCounterName() {
+        return counterName;
+    }
+    
+    public void setCounterName(String counterName) {
+        this.counterName = counterName;
+    }
+    
+    public String getSessionToken() {
+        return sessionToken;
+    }
+    
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
 }
@@ -20,6 +20,8 @@ public class PatientDetailsDTO {
     private LocalDateTime joinedAt;
     private LocalDateTime servedAt;
     private LocalDateTime notifiedAt;
+    private Long counterId;
+    private String counterName;
     
     public PatientDetailsDTO() {
     }
@@ -45,6 +47,13 @@ public class PatientDetailsDTO {
         dto.setServedAt(patient.getServedAt());
         dto.setNotifiedAt(patient.getNotifiedAt());
         
+        // Only the counter of a patient being served matters to the queue display, and
+        // reading it for the history lists would load one counter per row
+        if (patient.getStatus() == Patient.PatientStatus.SERVING && patient.getCounter() != null) {
+            dto.setCounterId(patient.getCounter().getId());
+            dto.setCounterName(patient.getCounter().getName());
+        }
+        
         return dto;
     }
 
@@ -135,4 +144,20 @@ public class PatientDetailsDTO {
     public void setNotifiedAt(LocalDateTime notifiedAt) {
         this.notifiedAt = notifiedAt;
     }
+
+    public Long getCounterId() {
+        return counterId;
+    }
+
+    public void setCounterId(Long counterId) {
+        this.counterId = counterId;
+    }
+
+    public String getCounterName() {
+        return counterName;
+    }
+
+    public void setCounterName(String counterName) {
+        this.counterName = counterName;
+    }
 }
@@ -0,0 +1,36 @@
+package com.hospital.queue.dto;
+
+/**
+ * Where to move a waiting patient: directly before or directly after another waiting
+ * patient of the same queue. Exactly one of the two must be set.
+ */
+public class PatientMoveDTO {
+    
+    private Long beforePatientId;
+    
+    private Long afterPatientId;
+    
+    public PatientMoveDTO() {
+    }
+    
+    public PatientMoveDTO(Long beforePatientId, Long afterPatientId) {
+        this.beforePatientId = beforePatientId;
+        this.afterPatientId = afterPatientId;
+    }
+    
+    public Long getBeforePatientId() {
+        return beforePatientId;
+    }
+    
+    public void setBeforePatientId(Long beforePatientId) {
+        this.beforePatientId = beforePatientId;
+    }
+    
+    public Long getAfterPatientId() {
+        return afterPatientId;
+    }
+    
+    public void setAfterPatientId(Long afterPatientId) {
+        this.afterPatientId = afterPatientId;
+    }
+}
@@ -10,6 +10,9 @@ public class PatientStatusUpdateDTO {
     @NotNull(message = "Patient status is required")
     private PatientStatus status;
     
+    // Optional counter to serve the patient at when the status is SERVING
+    private Long counterId;
+    
     public PatientStatusUpdateDTO() {
     }
     
@@ -24,4 +27,12 @@ public class PatientStatusUpdateDTO {
     public void setStatus(PatientStatus status) {
         this.status = status;
     }
+    
+    public Long getCounterId() {
+        return counterId;
+    }
+    
+    public void setCounterId(Long counterId) {
+        this.counterId = counterId;
+    }
 }
@@ -15,12 +15,20 @@ public class QueueDetailsDTO {
     private String departmentName;
     private String qrCodeId;
     private String qrCodeImage;
+    private String qrCodeImageUrl;
     private PatientDetailsDTO currentPatient;
+    // Every patient being served, one per counter; currentPatient is the first of them
+    private List<PatientDetailsDTO> servingPatients;
     private List<PatientDetailsDTO> waitingPatients;
     private List<PatientDetailsDTO> servedPatients;
     private List<PatientDetailsDTO> cancelledPatients;
     private int waitingCount;
     private int servedCount;
+    private int cancelledCount;
+    // Pass as servedBefore/cancelledBefore to get the next page of history; null on the last page
+    private Long servedNextCursor;
+    private Long cancelledNextCursor;
+    private long version;
     
     public QueueDetailsDTO() {
     }
@@ -100,6 +108,14 @@ public class QueueDetailsDTO {
         this.qrCodeImage = qrCodeImage;
     }
     
+    public String getQrCodeImageUrl() {
+        return qrCodeImageUrl;
+    }
+    
+    public void setQrCodeImageUrl(String qrCodeImageUrl) {
+        this.qrCodeImageUrl = qrCodeImageUrl;
+    }
+    
     public PatientDetailsDTO getCurrentPatient() {
         return currentPatient;
     }
@@ -112,6 +128,20 @@ public class QueueDetailsDTO {
         }
     }
     
+    public List<PatientDetailsDTO> getServingPatients() {
+        return servingPatients;
+    }
+    
+    public void setServingPatients(List<Patient> servingPatients) {
+        if (servingPatients != null) {
+            this.servingPatients = servingPatients.stream()
+                .map(PatientDetailsDTO::fromPatient)
+                .collect(Collectors.toList());
+        } else {
+            this.servingPatients = null;
+        }
+    }
+    
     public List<PatientDetailsDTO> getWaitingPatients() {
         return waitingPatients;
     }
@@ -169,4 +199,36 @@ public class QueueDetailsDTO {
     public void setServedCount(int servedCount) {
         this.servedCount = servedCount;
     }
+    
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+    
+    public void setCancelledCount(int cancelledCount) {
+        this.cancelledCount = cancelledCount;
+    }
+    
+    public Long getServedNextCursor() {
+        return servedNextCursor;
+    }
+    
+    public void setServedNextCursor(Long servedNextCursor) {
+        this.servedNextCursor = servedNextCursor;
+    }
+    
+    public Long getCancelledNextCursor() {
+        return cancelledNextCursor;
+    }
+    
+    public void setCancelledNextCursor(Long cancelledNextCursor) {
+        this.cancelledNextCursor = cancelledNextCursor;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,123 @@
+package com.hospital.queue.dto;
+
+import com.hospital.queue.model.Patient.PatientStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Versioned change event published on /topic/queue/{queueId}.
+ *
+ * Versions increase by exactly one per event and queue, so clients can apply events
+ * to their local copy of the queue and only re-fetch the queue details when they
+ * notice a gap. QUEUE_UPDATED carries no delta and always means "resync".
+ */
+public class QueueEventDTO {
+
+    public enum EventType {
+        QUEUE_UPDATED,
+        PATIENT_JOINED,
+        STATUS_CHANGED,
+        POSITION_CHANGED
+    }
+
+    private Long queueId;
+    private long version;
+    private EventType type;
+    private Long patientId;
+    private String patientName;
+    private PatientStatus status;
+    private PatientStatus previousStatus;
+    private Integer queuePosition;
+    // POSITION_CHANGED: the waiting patient now directly ahead of the moved one; null at the front
+    private Long afterPatientId;
+    private LocalDateTime timestamp;
+
+    public QueueEventDTO() {
+    }
+
+    public QueueEventDTO(Long queueId, EventType type) {
+        this.queueId = queueId;
+        this.type = type;
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public Long getQueueId() {
+        return queueId;
+    }
+
+    public void setQueueId(Long queueId) {
+        this.queueId = queueId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public void setType(EventType type) {
+        this.type = type;
+    }
+
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Long patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public void setPatientName(String patientName) {
+        this.patientName = patientName;
+    }
+
+    public PatientStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(PatientStatus status) {
+        this.status = status;
+    }
+
+    public PatientStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public void setPreviousStatus(PatientStatus previousStatus) {
+        this.previousStatus = previousStatus;
+    }
+
+    public Integer getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(Integer queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+
+    public Long getAfterPatientId() {
+        return afterPatientId;
+    }
+
+    public void setAfterPatientId(Long afterPatientId) {
+        this.afterPatientId = afterPatientId;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+}
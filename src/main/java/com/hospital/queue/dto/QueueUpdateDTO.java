@@ -0,0 +1,60 @@
+package com.hospital.queue.dto;
+
+import java.util.List;
+
+/**
+ * One coalesced message on /topic/queue/{queueId}, carrying every event produced by a
+ * transaction (or a short time window) for that queue, in version order.
+ *
+ * Clients whose last applied version is not {@code fromVersion - 1} missed a message
+ * and should re-fetch the queue details.
+ */
+public class QueueUpdateDTO {
+
+    private Long queueId;
+    private long fromVersion;
+    private long toVersion;
+    private List<QueueEventDTO> events;
+
+    public QueueUpdateDTO() {
+    }
+
+    public QueueUpdateDTO(Long queueId, long fromVersion, long toVersion, List<QueueEventDTO> events) {
+        this.queueId = queueId;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.events = events;
+    }
+
+    public Long getQueueId() {
+        return queueId;
+    }
+
+    public void setQueueId(Long queueId) {
+        this.queueId = queueId;
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public void setFromVersion(long fromVersion) {
+        this.fromVersion = fromVersion;
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    public void setToVersion(long toVersion) {
+        this.toVersion = toVersion;
+    }
+
+    public List<QueueEventDTO> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<QueueEventDTO> events) {
+        this.events = events;
+    }
+}
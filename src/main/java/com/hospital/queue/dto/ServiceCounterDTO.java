@@ -0,0 +1,82 @@
+package com.hospital.queue.dto;
+
+import javax.validation.constraints.NotBlank;
+
+
+public class ServiceCounterDTO {
+
+    private Long id;
+
+    @NotBlank(message = "Counter name is required")
+    private String name;
+
+    private Long queueId;
+
+    // Defaults to open when a counter is created
+    private Boolean open;
+
+    // Patient currently being served at the counter, if any
+    private Long servingPatientId;
+
+    private String servingPatientName;
+
+    public ServiceCounterDTO() {
+    }
+
+    public ServiceCounterDTO(Long id, String name, Long queueId, Boolean open, Long servingPatientId, String servingPatientName) {
+        this.id = id;
+        this.name = name;
+        this.queueId = queueId;
+        this.open = open;
+        this.servingPatientId = servingPatientId;
+        this.servingPatientName = servingPatientName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getQueueId() {
+        return queueId;
+    }
+
+    public void setQueueId(Long queueId) {
+        this.queueId = queueId;
+    }
+
+    public Boolean getOpen() {
+        return open;
+    }
+
+    public void setOpen(Boolean open) {
+        this.open = open;
+    }
+
+    public Long getServingPatientId() {
+        return servingPatientId;
+    }
+
+    public void setServingPatientId(Long servingPatientId) {
+        this.servingPatientId = servingPatientId;
+    }
+
+    public String getServingPatientName() {
+        return servingPatientName;
+    }
+
+    public void setServingPatientName(String servingPatientName) {
+        this.servingPatientName = servingPatientName;
+    }
+}
@@ -0,0 +1,135 @@
+package com.hospital.queue.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Pending patient notification, written in the same transaction as the change that caused it
+ */
+@Entity
+@Table(name = "notification_outbox")
+public class NotificationOutbox {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_outbox_id_generator")
+    @SequenceGenerator(name = "notification_outbox_id_generator", sequenceName = "notification_outbox_id_seq", allocationSize = 50)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EventType eventType;
+    
+    @Column(nullable = false)
+    private Long patientId;
+    
+    private Long queueId;
+    
+    private String status;
+    
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+    
+    @Column(nullable = false)
+    private int attempts;
+    
+    @Column(length = 500)
+    private String lastError;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime dispatchedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    public enum EventType {
+        // WebSocket notification to the patient channel plus a push notification to the patient's devices
+        PATIENT_STATUS
+    }
+    
+    public NotificationOutbox() {
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public EventType getEventType() {
+        return eventType;
+    }
+    
+    public void setEventType(EventType eventType) {
+        this.eventType = eventType;
+    }
+    
+    public Long getPatientId() {
+        return patientId;
+    }
+    
+    public void setPatientId(Long patientId) {
+        this.patientId = patientId;
+    }
+    
+    public Long getQueueId() {
+        return queueId;
+    }
+    
+    public void setQueueId(Long queueId) {
+        this.queueId = queueId;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public String getPayload() {
+        return payload;
+    }
+    
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getDispatchedAt() {
+        return dispatchedAt;
+    }
+    
+    public void setDispatchedAt(LocalDateTime dispatchedAt) {
+        this.dispatchedAt = dispatchedAt;
+    }
+}
@@ -7,8 +7,13 @@ import java.time.LocalDateTime;
 @Table(name = "patients")
 public class Patient {
     
+    // Room left between the order keys of consecutive new patients
+    public static final long ORDER_KEY_GAP = 1024;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence ids let Hibernate batch inserts; allocationSize matches the sequence increment
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_id_generator")
+    @SequenceGenerator(name = "patient_id_generator", sequenceName = "patients_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -22,12 +27,21 @@ public class Patient {
     @JoinColumn(name = "queue_id", nullable = false)
     private Queue queue;
     
+    // Counter the patient is or was served at; null when the queue has a single desk
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "counter_id")
+    private ServiceCounter counter;
+    
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private PatientStatus status = PatientStatus.WAITING;
     
     private Integer queuePosition;
     
+    // Sort key within the queue; unlike queuePosition it changes when the patient is moved
+    @Column(nullable = false)
+    private Long orderKey;
+    
     @Column(nullable = false)
     private LocalDateTime joinedAt;
     
@@ -38,6 +52,16 @@ public class Patient {
     @PrePersist
     protected void onCreate() {
         joinedAt = LocalDateTime.now();
+        if (orderKey == null) {
+            orderKey = orderKeyFor(queuePosition != null ? queuePosition : 0);
+        }
+    }
+    
+    /**
+     * Initial order key of a patient joining at the given position.
+     */
+    public static long orderKeyFor(int queuePosition) {
+        return queuePosition * ORDER_KEY_GAP;
     }
     
     public enum PatientStatus {
@@ -91,6 +115,14 @@ public class Patient {
         this.queue = queue;
     }
     
+    public ServiceCounter getCounter() {
+        return counter;
+    }
+    
+    public void setCounter(ServiceCounter counter) {
+        this.counter = counter;
+    }
+    
     public PatientStatus getStatus() {
         return status;
     }
@@ -107,6 +139,14 @@ public class Patient {
         this.queuePosition = queuePosition;
     }
     
+    public Long getOrderKey() {
+        return orderKey;
+    }
+    
+    public void setOrderKey(Long orderKey) {
+        this.orderKey = orderKey;
+    }
+    
     public LocalDateTime getJoinedAt() {
         return joinedAt;
     }
@@ -11,7 +11,8 @@ import java.time.LocalDateTime;
 public class PatientDevice {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_device_id_generator")
+    @SequenceGenerator(name = "patient_device_id_generator", sequenceName = "patient_devices_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
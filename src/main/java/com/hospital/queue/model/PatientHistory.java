@@ -0,0 +1,155 @@
+package com.hospital.queue.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A finished patient moved out of the live patients table by the archiver.
+ * Rows keep the id they had as a live patient.
+ */
+@Entity
+@Table(name = "patient_history")
+public class PatientHistory {
+    
+    @Id
+    private Long id;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    private String phoneNumber;
+    
+    private String email;
+    
+    @Column(nullable = false)
+    private Long queueId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Patient.PatientStatus status;
+    
+    private Integer queuePosition;
+    
+    @Column(nullable = false)
+    private LocalDateTime joinedAt;
+    
+    private LocalDateTime servedAt;
+    
+    private LocalDateTime notifiedAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+    
+    public PatientHistory() {
+    }
+    
+    /**
+     * Detached patient carrying this history row, so archived patients can go through
+     * the same DTO conversions as live ones
+     * 
+     * @param queue Queue the patient belonged to
+     * @return Patient with the archived values
+     */
+    public Patient toPatient(Queue queue) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setName(name);
+        patient.setPhoneNumber(phoneNumber);
+        patient.setEmail(email);
+        patient.setQueue(queue);
+        patient.setStatus(status);
+        patient.setQueuePosition(queuePosition);
+        patient.setJoinedAt(joinedAt);
+        patient.setServedAt(servedAt);
+        patient.setNotifiedAt(notifiedAt);
+        return patient;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+    
+    public void setPhoneNumber(String phoneNumber) {
+        this.phoneNumber = phoneNumber;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+    }
+    
+    public Long getQueueId() {
+        return queueId;
+    }
+    
+    public void setQueueId(Long queueId) {
+        this.queueId = queueId;
+    }
+    
+    public Patient.PatientStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Patient.PatientStatus status) {
+        this.status = status;
+    }
+    
+    public Integer getQueuePosition() {
+        return queuePosition;
+    }
+    
+    public void setQueuePosition(Integer queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+    
+    public LocalDateTime getJoinedAt() {
+        return joinedAt;
+    }
+    
+    public void setJoinedAt(LocalDateTime joinedAt) {
+        this.joinedAt = joinedAt;
+    }
+    
+    public LocalDateTime getServedAt() {
+        return servedAt;
+    }
+    
+    public void setServedAt(LocalDateTime servedAt) {
+        this.servedAt = servedAt;
+    }
+    
+    public LocalDateTime getNotifiedAt() {
+        return notifiedAt;
+    }
+    
+    public void setNotifiedAt(LocalDateTime notifiedAt) {
+        this.notifiedAt = notifiedAt;
+    }
+    
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+    
+    public void setArchivedAt(LocalDateTime archivedAt) {
+        this.archivedAt = archivedAt;
+    }
+}
@@ -1,5 +1,7 @@
 package com.hospital.queue.model;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -25,6 +27,11 @@ public class Queue {
     @JoinColumn(name = "department_id", nullable = false)
     private Department department;
     
+    // Maintained exclusively by QueueRepository.advanceNextPosition, never written through the entity
+    @ColumnDefault("1")
+    @Column(name = "next_position", nullable = false, insertable = false, updatable = false)
+    private Integer nextPosition;
+    
     @OneToMany(mappedBy = "queue", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Patient> patients = new ArrayList<>();
     
@@ -86,6 +93,14 @@ public class Queue {
         this.department = department;
     }
     
+    public Integer getNextPosition() {
+        return nextPosition;
+    }
+    
+    public void setNextPosition(Integer nextPosition) {
+        this.nextPosition = nextPosition;
+    }
+    
     public List<Patient> getPatients() {
         return patients;
     }
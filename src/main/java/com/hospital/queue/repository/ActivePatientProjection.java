@@ -0,0 +1,18 @@
+package com.hospital.queue.repository;
+
+import com.hospital.queue.model.Patient.PatientStatus;
+
+/**
+ * Lightweight view of a patient that is still active in a queue.
+ * Used to warm up the in-memory queue engine without loading full entities.
+ */
+public interface ActivePatientProjection {
+
+    Long getId();
+
+    Long getQueueId();
+
+    PatientStatus getStatus();
+
+    Long getOrderKey();
+}
@@ -1,8 +1,11 @@
 package com.hospital.queue.repository;
 
+import com.hospital.queue.dto.DepartmentDTO;
 import com.hospital.queue.model.Department;
 import com.hospital.queue.model.Hospital;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -19,4 +22,13 @@ public interface DepartmentRepository extends JpaRepository<Department, Long> {
     List<Department> findByHospitalId(Long hospitalId);
     
     List<Department> findByHospital(Hospital hospital);
+    
+    // Department list views as DTOs, with the hospital name read by the same query
+    @Query("SELECT new com.hospital.queue.dto.DepartmentDTO(d.id, d.name, d.description, h.id, h.name) " +
+           "FROM Department d JOIN d.hospital h ORDER BY d.id")
+    List<DepartmentDTO> findAllAsDto();
+    
+    @Query("SELECT new com.hospital.queue.dto.DepartmentDTO(d.id, d.name, d.description, h.id, h.name) " +
+           "FROM Department d JOIN d.hospital h WHERE h.id = :hospitalId ORDER BY d.id")
+    List<DepartmentDTO> findAsDtoByHospitalId(@Param("hospitalId") Long hospitalId);
 }
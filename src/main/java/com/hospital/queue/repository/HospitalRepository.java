@@ -2,9 +2,14 @@ package com.hospital.queue.repository;
 
 import com.hospital.queue.model.Hospital;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface HospitalRepository extends JpaRepository<Hospital, Long> {
-    // Add custom query methods if needed
+    // Hospitals with their departments loaded by the same query, for the hospital list
+    @Query("SELECT DISTINCT h FROM Hospital h LEFT JOIN FETCH h.departments ORDER BY h.id")
+    List<Hospital> findAllWithDepartments();
 }
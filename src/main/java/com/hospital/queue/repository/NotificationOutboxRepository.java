@@ -0,0 +1,39 @@
+package com.hospital.queue.repository;
+
+import com.hospital.queue.model.NotificationOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for the notification outbox
+ */
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+    
+    /**
+     * Lock the oldest undispatched entries. Rows locked by another node are skipped,
+     * so several dispatchers can drain the outbox concurrently without double sends.
+     * 
+     * @param limit Maximum number of entries
+     * @return Locked entries, oldest first
+     */
+    @Query(value = "SELECT * FROM notification_outbox WHERE dispatched_at IS NULL " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<NotificationOutbox> lockPendingBatch(@Param("limit") int limit);
+    
+    /**
+     * Delete entries dispatched before the given time
+     * 
+     * @param cutoff Entries dispatched before this time are deleted
+     * @return Number of deleted entries
+     */
+    @Modifying
+    @Query("DELETE FROM NotificationOutbox o WHERE o.dispatchedAt < :cutoff")
+    int deleteDispatchedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
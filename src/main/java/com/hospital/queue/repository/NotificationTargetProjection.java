@@ -0,0 +1,16 @@
+package com.hospital.queue.repository;
+
+/**
+ * Patient and queue details needed to build a push notification.
+ * Device tokens come from the {@code DeviceTokenCache}.
+ */
+public interface NotificationTargetProjection {
+
+    Long getPatientId();
+
+    Integer getQueuePosition();
+
+    Long getQueueId();
+
+    String getQueueName();
+}
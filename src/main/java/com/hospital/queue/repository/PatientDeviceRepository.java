@@ -2,8 +2,12 @@ package com.hospital.queue.repository;
 
 import com.hospital.queue.model.PatientDevice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +25,14 @@ public interface PatientDeviceRepository extends JpaRepository<PatientDevice, Lo
      */
     List<PatientDevice> findByPatientId(Long patientId);
     
+    /**
+     * Find all device tokens for several patients
+     * 
+     * @param patientIds Patient IDs
+     * @return List of patient devices
+     */
+    List<PatientDevice> findByPatientIdIn(Collection<Long> patientIds);
+    
     /**
      * Find a device by patient ID and token
      * 
@@ -36,4 +48,14 @@ public interface PatientDeviceRepository extends JpaRepository<PatientDevice, Lo
      * @param patientId Patient ID
      */
     void deleteByPatientId(Long patientId);
+    
+    /**
+     * Delete every device registered with one of the given tokens
+     * 
+     * @param deviceTokens Device tokens
+     * @return Number of deleted devices
+     */
+    @Modifying
+    @Query("DELETE FROM PatientDevice d WHERE d.deviceToken IN :deviceTokens")
+    int deleteByDeviceTokenIn(@Param("deviceTokens") Collection<String> deviceTokens);
 }
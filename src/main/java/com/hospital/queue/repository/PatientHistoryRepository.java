@@ -0,0 +1,67 @@
+package com.hospital.queue.repository;
+
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.model.Patient.PatientStatus;
+import com.hospital.queue.model.PatientHistory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Repository for archived patients
+ */
+@Repository
+public interface PatientHistoryRepository extends JpaRepository<PatientHistory, Long> {
+    
+    // Most recent archived patients with a status, first page and following pages of the cursor
+    List<PatientHistory> findByQueueIdAndStatusOrderByIdDesc(Long queueId, PatientStatus status, Pageable pageable);
+    
+    List<PatientHistory> findByQueueIdAndStatusAndIdLessThanOrderByIdDesc(Long queueId, PatientStatus status, Long id, Pageable pageable);
+    
+    @Query("SELECT h.status AS status, COUNT(h) AS count FROM PatientHistory h WHERE h.queueId = :queueId GROUP BY h.status")
+    List<StatusCountProjection> countByQueueIdGroupByStatus(@Param("queueId") Long queueId);
+    
+    // Keyset page of archived patients as DTOs; the queue may have been deleted since
+    @Query("SELECT new com.hospital.queue.dto.PatientDTO(h.id, h.name, h.phoneNumber, h.email, h.queueId, q.name, " +
+           "q.qrCodeId, h.status, h.queuePosition, h.joinedAt, h.servedAt, h.notifiedAt) " +
+           "FROM PatientHistory h LEFT JOIN Queue q ON q.id = h.queueId WHERE h.id > :afterId ORDER BY h.id")
+    List<PatientDTO> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // All archived patients as DTOs through a database cursor, see PatientRepository.streamAllAsDto
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.hospital.queue.dto.PatientDTO(h.id, h.name, h.phoneNumber, h.email, h.queueId, q.name, " +
+           "q.qrCodeId, h.status, h.queuePosition, h.joinedAt, h.servedAt, h.notifiedAt) " +
+           "FROM PatientHistory h LEFT JOIN Queue q ON q.id = h.queueId ORDER BY h.id")
+    Stream<PatientDTO> streamAllAsDto();
+    
+    /**
+     * Move a batch of finished patients into the history table. The delete and the insert
+     * are one statement, so a row is never in both tables or in neither. Rows locked by a
+     * concurrent status change are skipped and picked up by a later run.
+     * 
+     * @param cutoff Patients who joined before this time are archived
+     * @param limit Maximum number of patients to move
+     * @return Number of archived patients
+     */
+    @Modifying
+    @Query(value = "WITH moved AS (" +
+                   "  DELETE FROM patients WHERE id IN (" +
+                   "    SELECT id FROM patients WHERE status IN ('SERVED', 'CANCELLED') AND joined_at < :cutoff " +
+                   "    ORDER BY joined_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "  RETURNING id, name, phone_number, email, queue_id, status, queue_position, joined_at, served_at, notified_at) " +
+                   "INSERT INTO patient_history (id, name, phone_number, email, queue_id, status, queue_position, " +
+                   "  joined_at, served_at, notified_at, archived_at) " +
+                   "SELECT id, name, phone_number, email, queue_id, status, queue_position, " +
+                   "  joined_at, served_at, notified_at, CURRENT_TIMESTAMP FROM moved",
+           nativeQuery = true)
+    int archiveFinishedPatients(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
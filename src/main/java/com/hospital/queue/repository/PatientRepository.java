@@ -1,27 +1,121 @@
 package com.hospital.queue.repository;
 
+import com.hospital.queue.dto.PatientDTO;
 import com.hospital.queue.model.Patient;
 import com.hospital.queue.model.Patient.PatientStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Long> {
     // Find all patients in a queue ordered by position
     List<Patient> findByQueueIdOrderByQueuePosition(Long queueId);
     
+    // Delete every patient of a queue in one statement, without loading them first
+    @Modifying
+    @Query("DELETE FROM Patient p WHERE p.queue.id = :queueId")
+    int bulkDeleteByQueueId(@Param("queueId") Long queueId);
+    
     // Find patients with specific status
     List<Patient> findByQueueIdAndStatusOrderByQueuePosition(Long queueId, PatientStatus status);
     
-    // Find patients with any of the specified statuses
-    List<Patient> findByQueueIdAndStatusInOrderByQueuePosition(Long queueId, List<PatientStatus> statuses);
+    // Patients with a specific status in queue order, with the counter each one is at read by the same query
+    @EntityGraph(attributePaths = "counter")
+    List<Patient> findWithCounterByQueueIdAndStatusOrderByOrderKey(Long queueId, PatientStatus status);
+    
+    // Whether a counter is busy with a patient
+    boolean existsByCounterIdAndStatus(Long counterId, PatientStatus status);
+    
+    // Patients with a specific status at a counter
+    List<Patient> findByCounterIdAndStatus(Long counterId, PatientStatus status);
+    
+    // Find patients with any of the specified statuses, in queue order
+    List<Patient> findByQueueIdAndStatusInOrderByOrderKey(Long queueId, List<PatientStatus> statuses);
+    
+    // Same order as the queue engine, which breaks ties between equal keys by id
+    List<Patient> findByQueueIdAndStatusInOrderByOrderKeyAscIdAsc(Long queueId, List<PatientStatus> statuses);
     
     @Query("SELECT COUNT(p) FROM Patient p WHERE p.queue.id = ?1 AND p.status = ?2")
     int countByQueueIdAndStatus(Long queueId, PatientStatus status);
     
-    @Query("SELECT MAX(p.queuePosition) FROM Patient p WHERE p.queue.id = ?1")
-    Integer findMaxQueuePositionByQueueId(Long queueId);
+    // Number of patients per status in a queue, counted by the database
+    @Query("SELECT p.status AS status, COUNT(p) AS count FROM Patient p WHERE p.queue.id = :queueId GROUP BY p.status")
+    List<StatusCountProjection> countByQueueIdGroupByStatus(@Param("queueId") Long queueId);
+    
+    // Most recent patients with a status, first page and following pages of the cursor
+    List<Patient> findByQueueIdAndStatusOrderByIdDesc(Long queueId, PatientStatus status, Pageable pageable);
+    
+    List<Patient> findByQueueIdAndStatusAndIdLessThanOrderByIdDesc(Long queueId, PatientStatus status, Long id, Pageable pageable);
+    
+    // Row-locked reads used to dispatch a patient exactly once. Rows another transaction is
+    // dispatching are skipped instead of waited for. Statuses are passed as stored, by name
+    @Query(value = "SELECT * FROM patients WHERE id = :id AND status IN (:statuses) " +
+                   "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<Patient> lockByIdAndStatusIn(@Param("id") Long id, @Param("statuses") Collection<String> statuses);
+    
+    @Query(value = "SELECT * FROM patients WHERE queue_id = :queueId AND status IN (:statuses) " +
+                   "ORDER BY order_key, id LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<Patient> lockFirstByQueueIdAndStatusIn(@Param("queueId") Long queueId,
+                                                    @Param("statuses") Collection<String> statuses);
+    
+    // The next waiting patients in line, locked so concurrent transitions notify each of them once
+    @Query(value = "SELECT * FROM patients WHERE queue_id = :queueId AND status = 'WAITING' " +
+                   "ORDER BY order_key, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Patient> lockNextWaitingByQueueId(@Param("queueId") Long queueId, @Param("limit") int limit);
+    
+    // Whether a patient of a single-desk queue is being served
+    boolean existsByQueueIdAndStatusAndCounterIsNull(Long queueId, PatientStatus status);
+    
+    // Patients with a specific status at the single desk of a queue
+    List<Patient> findByQueueIdAndStatusAndCounterIsNull(Long queueId, PatientStatus status);
+    
+    // Lightweight views of active patients, used to warm up the in-memory queue engine
+    @Query("SELECT p.id AS id, p.queue.id AS queueId, p.status AS status, p.orderKey AS orderKey " +
+           "FROM Patient p WHERE p.status IN :statuses")
+    List<ActivePatientProjection> findActiveByStatusIn(@Param("statuses") List<PatientStatus> statuses);
+    
+    @Query("SELECT p.id AS id, p.queue.id AS queueId, p.status AS status, p.orderKey AS orderKey " +
+           "FROM Patient p WHERE p.queue.id = :queueId AND p.status IN :statuses")
+    List<ActivePatientProjection> findActiveByQueueIdAndStatusIn(@Param("queueId") Long queueId,
+                                                                 @Param("statuses") List<PatientStatus> statuses);
+    
+    // Patient and queue name for push notifications, resolved in one round trip
+    @Query("SELECT p.id AS patientId, p.queuePosition AS queuePosition, q.id AS queueId, q.name AS queueName " +
+           "FROM Patient p JOIN p.queue q WHERE p.id IN :patientIds")
+    List<NotificationTargetProjection> findNotificationTargets(@Param("patientIds") Collection<Long> patientIds);
+    
+    // All patients as DTOs, with the queue columns read by the same query
+    @Query("SELECT new com.hospital.queue.dto.PatientDTO(p.id, p.name, p.phoneNumber, p.email, q.id, q.name, " +
+           "q.qrCodeId, p.status, p.queuePosition, p.joinedAt, p.servedAt, p.notifiedAt) " +
+           "FROM Patient p JOIN p.queue q ORDER BY p.id")
+    List<PatientDTO> findAllAsDto();
+    
+    // Keyset page of patients as DTOs in id order
+    @Query("SELECT new com.hospital.queue.dto.PatientDTO(p.id, p.name, p.phoneNumber, p.email, q.id, q.name, " +
+           "q.qrCodeId, p.status, p.queuePosition, p.joinedAt, p.servedAt, p.notifiedAt) " +
+           "FROM Patient p JOIN p.queue q WHERE p.id > :afterId ORDER BY p.id")
+    List<PatientDTO> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * All patients as DTOs in id order, read through a database cursor. The rows are never
+     * attached to the persistence context, so memory stays flat however many there are.
+     * Must be consumed and closed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.hospital.queue.dto.PatientDTO(p.id, p.name, p.phoneNumber, p.email, q.id, q.name, " +
+           "q.qrCodeId, p.status, p.queuePosition, p.joinedAt, p.servedAt, p.notifiedAt) " +
+           "FROM Patient p JOIN p.queue q ORDER BY p.id")
+    Stream<PatientDTO> streamAllAsDto();
 }
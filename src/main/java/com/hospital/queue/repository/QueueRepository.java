@@ -1,9 +1,17 @@
 package com.hospital.queue.repository;
 
+import com.hospital.queue.dto.QueueDTO;
 import com.hospital.queue.model.Queue;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +19,57 @@ import java.util.Optional;
 public interface QueueRepository extends JpaRepository<Queue, Long> {
     List<Queue> findByDepartmentId(Long departmentId);
     Optional<Queue> findByQrCodeId(String qrCodeId);
+    List<Queue> findByQrCodeIdIn(Collection<String> qrCodeIds);
+    
+    // Queue list views as DTOs; the department id is read from the foreign key, no join needed
+    @Query("SELECT new com.hospital.queue.dto.QueueDTO(q.id, q.name, q.description, q.department.id, q.qrCodeId) " +
+           "FROM Queue q ORDER BY q.id")
+    List<QueueDTO> findAllAsDto();
+    
+    @Query("SELECT new com.hospital.queue.dto.QueueDTO(q.id, q.name, q.description, q.department.id, q.qrCodeId) " +
+           "FROM Queue q WHERE q.department.id = :departmentId ORDER BY q.id")
+    List<QueueDTO> findAsDtoByDepartmentId(@Param("departmentId") Long departmentId);
+    
+    // Keyset page of queues in id order
+    @Query("SELECT new com.hospital.queue.dto.QueueDTO(q.id, q.name, q.description, q.department.id, q.qrCodeId) " +
+           "FROM Queue q WHERE q.id > :afterId ORDER BY q.id")
+    List<QueueDTO> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT q.qrCodeId FROM Queue q WHERE q.id = :queueId")
+    Optional<String> findQrCodeIdById(@Param("queueId") Long queueId);
+    
+    // Atomically reserve positions; the row stays locked until the caller's transaction ends
+    @Modifying
+    @Query("UPDATE Queue q SET q.nextPosition = q.nextPosition + :count WHERE q.id = :queueId")
+    int advanceNextPosition(@Param("queueId") Long queueId, @Param("count") int count);
+    
+    @Query("SELECT q.nextPosition FROM Queue q WHERE q.id = :queueId")
+    Integer findNextPositionById(@Param("queueId") Long queueId);
+    
+    // Atomically reserve event versions, shared by every application instance. They live in a table
+    // of their own, so the row lock taken here is never mixed up with the queue row locks.
+    // Reads the queue without locking it and changes nothing once the queue is deleted
+    @Modifying
+    @Query(value = "INSERT INTO queue_event_versions (queue_id, version) " +
+                   "SELECT id, :count FROM queues WHERE id = :queueId " +
+                   "ON CONFLICT (queue_id) DO UPDATE SET version = queue_event_versions.version + EXCLUDED.version",
+           nativeQuery = true)
+    int advanceEventVersion(@Param("queueId") Long queueId, @Param("count") int count);
+    
+    @Query(value = "SELECT version FROM queue_event_versions WHERE queue_id = :queueId", nativeQuery = true)
+    Long findEventVersionById(@Param("queueId") Long queueId);
+    
+    @Modifying
+    @Query(value = "DELETE FROM queue_event_versions WHERE queue_id = :queueId", nativeQuery = true)
+    int deleteEventVersionById(@Param("queueId") Long queueId);
+    
+    // Serializes changes to the order of a queue's patients
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT q FROM Queue q WHERE q.id = :queueId")
+    Optional<Queue> lockById(@Param("queueId") Long queueId);
+    
+    // Delete a queue without cascading through its patients collection; patients must be deleted first
+    @Modifying
+    @Query("DELETE FROM Queue q WHERE q.id = :queueId")
+    int bulkDeleteById(@Param("queueId") Long queueId);
 }
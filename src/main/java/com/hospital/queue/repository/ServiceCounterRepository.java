@@ -0,0 +1,31 @@
+package com.hospital.queue.repository;
+
+import com.hospital.queue.dto.ServiceCounterDTO;
+import com.hospital.queue.model.Patient.PatientStatus;
+import com.hospital.queue.model.ServiceCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ServiceCounterRepository extends JpaRepository<ServiceCounter, Long> {
+    // Counters of a queue with the patient each one is serving, read by a single query
+    @Query("SELECT new com.hospital.queue.dto.ServiceCounterDTO(c.id, c.name, c.queue.id, c.open, p.id, p.name) " +
+           "FROM ServiceCounter c LEFT JOIN Patient p ON p.counter = c AND p.status = :serving " +
+           "WHERE c.queue.id = :queueId ORDER BY c.id")
+    List<ServiceCounterDTO> findAsDtoByQueueId(@Param("queueId") Long queueId,
+                                               @Param("serving") PatientStatus serving);
+
+    Optional<ServiceCounter> findByIdAndQueueId(Long id, Long queueId);
+
+    // Serializes calls to the same counter only; other counters of the queue are dispatched concurrently
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ServiceCounter c WHERE c.id = :id AND c.queue.id = :queueId")
+    Optional<ServiceCounter> lockByIdAndQueueId(@Param("id") Long id, @Param("queueId") Long queueId);
+}
@@ -0,0 +1,13 @@
+package com.hospital.queue.repository;
+
+import com.hospital.queue.model.Patient.PatientStatus;
+
+/**
+ * Number of patients of a queue in one status.
+ */
+public interface StatusCountProjection {
+
+    PatientStatus getStatus();
+
+    Long getCount();
+}
@@ -0,0 +1,34 @@
+package com.hospital.queue.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Transport used by {@link ClusterMessageBackplane} to pass notifications between nodes.
+ * Abstracted so the backplane can be exercised against an in-memory fake.
+ */
+public interface BackplaneChannel {
+
+    /**
+     * Send notifications to every node listening on the channel, this one included.
+     *
+     * @param payloads Notification payloads, each at most {@link #MAX_PAYLOAD_BYTES} bytes of UTF-8
+     */
+    void send(List<String> payloads) throws Exception;
+
+    /**
+     * Start passing the payloads of received notifications to the listener. Notifications
+     * sent while the channel is disconnected are lost.
+     */
+    void listen(Consumer<String> listener);
+
+    /**
+     * Stop listening and release the channel's connections.
+     */
+    void close();
+
+    /**
+     * Largest payload a notification may carry; Postgres rejects NOTIFY payloads of 8000 bytes or more.
+     */
+    int MAX_PAYLOAD_BYTES = 7999;
+}
@@ -0,0 +1,354 @@
+package com.hospital.queue.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.queue.dto.CacheInvalidationDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Backplane for several nodes sharing a {@link BackplaneChannel}.
+ *
+ * A published message is serialized once, delivered to this node's subscribers right away
+ * and queued for the other nodes. A single worker drains the queue and packs as many
+ * messages as fit into each notification, so a burst of queue updates costs a handful of
+ * notifications. Every node re-broadcasts the notifications of the other nodes to its own
+ * subscribers and skips its own. Messages too large for a notification are compressed.
+ *
+ * Cache invalidations travel the same way but are handed to the other nodes as application
+ * events instead of WebSocket messages. When notifications from a node were lost, every
+ * cache is dropped, since there is no telling which entries the lost ones covered. A node
+ * that drops messages itself, because its queue is full or a send fails, skips a sequence
+ * number so the loss shows as a gap, and tells the other nodes to drop every cache once its
+ * queue drains, in case nothing else is sent after the loss. Behind the STOMP broker relay,
+ * which already reaches every node's subscribers, only the invalidations are sent.
+ */
+@Service
+@ConditionalOnProperty(name = "app.websocket.backplane", havingValue = "postgres")
+public class ClusterMessageBackplane implements MessageBackplane {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMessageBackplane.class);
+
+    static final String INVALIDATION_DESTINATION = "/internal/cache-invalidation";
+
+    private final BackplaneChannel channel;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean brokerRelay;
+    private final BlockingQueue<OutgoingMessage> queue;
+    private final int batchSize;
+    private final String nodeId = UUID.randomUUID().toString();
+    // Sequence numbers keep payloads of one batch distinct (Postgres folds identical ones) and reveal missed notifications
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> lastSequenceByNode = new ConcurrentHashMap<>();
+    // Set when messages were dropped here, until the other nodes have been told to drop every cache
+    private final AtomicBoolean resyncPending = new AtomicBoolean();
+    // Room for a single message in a notification of its own
+    private final int maxMessageBytes = BackplaneChannel.MAX_PAYLOAD_BYTES - envelopeHeader(Long.MAX_VALUE).length() - 2;
+
+    private final Counter publishedCounter;
+    private final Counter sentCounter;
+    private final Counter droppedCounter;
+    private final Counter receivedCounter;
+    private final Counter missedCounter;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public ClusterMessageBackplane(BackplaneChannel channel,
+                                   SimpMessagingTemplate messagingTemplate,
+                                   ObjectMapper objectMapper,
+                                   ApplicationEventPublisher eventPublisher,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.websocket.broker:simple}") String brokerMode,
+                                   @Value("${app.backplane.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${app.backplane.batch-size:100}") int batchSize) {
+        this.channel = channel;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.brokerRelay = "relay".equalsIgnoreCase(brokerMode);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.publishedCounter = meterRegistry.counter("backplane.messages.published");
+        this.sentCounter = meterRegistry.counter("backplane.messages.sent");
+        this.droppedCounter = meterRegistry.counter("backplane.messages.dropped");
+        this.receivedCounter = meterRegistry.counter("backplane.messages.received");
+        this.missedCounter = meterRegistry.counter("backplane.notifications.missed");
+        meterRegistry.gauge("backplane.queue.size", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "backplane-sender");
+        worker.setDaemon(true);
+        worker.start();
+        channel.listen(this::receive);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Deliver the payload to this node's subscribers and queue it for the other nodes. Never blocks.
+     */
+    @Override
+    public void publish(String destination, Object payload) {
+        Message<?> message = messagingTemplate.getMessageConverter().toMessage(payload, null);
+        MimeType contentType = message != null ? (MimeType) message.getHeaders().get(MessageHeaders.CONTENT_TYPE) : null;
+        if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            throw new IllegalArgumentException("Backplane messages must convert to JSON, got " + contentType);
+        }
+
+        messagingTemplate.send(destination, message);
+        publishedCounter.increment();
+
+        if (!brokerRelay) {
+            offer(new OutgoingMessage(destination, (byte[]) message.getPayload()));
+        }
+    }
+
+    /**
+     * Queue a cache invalidation for the other nodes. Never blocks.
+     */
+    @Override
+    public void invalidate(CacheInvalidationDTO invalidation) {
+        try {
+            offer(new OutgoingMessage(INVALIDATION_DESTINATION, objectMapper.writeValueAsBytes(invalidation)));
+        } catch (IOException e) {
+            logger.error("Could not encode cache invalidation: {}", e.getMessage());
+            dropped(1);
+        }
+    }
+
+    private void offer(OutgoingMessage message) {
+        if (!queue.offer(message)) {
+            logger.warn("Backplane queue is full, {} does not reach the other nodes", message.destination);
+            dropped(1);
+        }
+    }
+
+    // The skipped sequence number shows the loss to the other nodes with the next notification
+    private void dropped(int count) {
+        droppedCounter.increment(count);
+        sequence.incrementAndGet();
+        resyncPending.set(true);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<OutgoingMessage> batch = new ArrayList<>(batchSize);
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+                if (queue.isEmpty() && resyncPending.getAndSet(false)) {
+                    send(dropEveryCache());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<OutgoingMessage> dropEveryCache() {
+        List<OutgoingMessage> invalidations = new ArrayList<>();
+        for (CacheInvalidationDTO.Cache cache : CacheInvalidationDTO.Cache.values()) {
+            try {
+                invalidations.add(new OutgoingMessage(INVALIDATION_DESTINATION,
+                        objectMapper.writeValueAsBytes(new CacheInvalidationDTO(cache, null))));
+            } catch (IOException e) {
+                logger.error("Could not encode cache invalidation: {}", e.getMessage());
+            }
+        }
+        return invalidations;
+    }
+
+    private void send(List<OutgoingMessage> batch) {
+        List<String> payloads = new ArrayList<>();
+        int packed = pack(batch, payloads);
+        if (payloads.isEmpty()) {
+            return;
+        }
+
+        try {
+            channel.send(payloads);
+            sentCounter.increment(packed);
+        } catch (Exception e) {
+            logger.error("Backplane send of {} messages failed: {}", packed, e.getMessage());
+            dropped(packed);
+        }
+    }
+
+    // Pack the encoded messages into as few notifications as the payload limit allows; returns how many were packed
+    private int pack(List<OutgoingMessage> batch, List<String> payloads) {
+        int packed = 0;
+        StringBuilder payload = null;
+        int payloadBytes = 0;
+        for (OutgoingMessage message : batch) {
+            String encoded = encode(message);
+            if (encoded == null) {
+                continue;
+            }
+
+            int encodedBytes = encoded.getBytes(StandardCharsets.UTF_8).length;
+            if (payload != null && payloadBytes + 1 + encodedBytes + 2 > BackplaneChannel.MAX_PAYLOAD_BYTES) {
+                payloads.add(payload.append("]}").toString());
+                payload = null;
+            }
+            if (payload == null) {
+                payload = new StringBuilder(envelopeHeader(sequence.incrementAndGet()));
+                payloadBytes = payload.length();
+            } else {
+                payload.append(',');
+                payloadBytes++;
+            }
+            payload.append(encoded);
+            payloadBytes += encodedBytes;
+            packed++;
+        }
+        if (payload != null) {
+            payloads.add(payload.append("]}").toString());
+        }
+        return packed;
+    }
+
+    private String envelopeHeader(long seq) {
+        return "{\"node\":\"" + nodeId + "\",\"seq\":" + seq + ",\"messages\":[";
+    }
+
+    // {"destination":...,"payload":<json>}, or the payload gzipped and base64 encoded when it would not fit
+    private String encode(OutgoingMessage message) {
+        try {
+            String destination = objectMapper.writeValueAsString(message.destination);
+
+            String encoded = "{\"destination\":" + destination + ",\"payload\":"
+                    + new String(message.json, StandardCharsets.UTF_8) + "}";
+            if (encoded.getBytes(StandardCharsets.UTF_8).length <= maxMessageBytes) {
+                return encoded;
+            }
+
+            encoded = "{\"destination\":" + destination + ",\"gzip\":\""
+                    + Base64.getEncoder().encodeToString(gzip(message.json)) + "\"}";
+            if (encoded.length() <= maxMessageBytes) {
+                return encoded;
+            }
+        } catch (IOException e) {
+            logger.error("Could not encode backplane message for {}: {}", message.destination, e.getMessage());
+            dropped(1);
+            return null;
+        }
+
+        logger.warn("Message for {} is too large for the backplane and reaches this node's subscribers only", message.destination);
+        dropped(1);
+        return null;
+    }
+
+    private void receive(String notification) {
+        try {
+            JsonNode envelope = objectMapper.readTree(notification);
+            String node = envelope.path("node").asText();
+            if (nodeId.equals(node)) {
+                // Already delivered to this node's subscribers when it was published
+                return;
+            }
+            trackSequence(node, envelope.path("seq").asLong());
+
+            for (JsonNode message : envelope.path("messages")) {
+                byte[] json = message.has("gzip")
+                        ? gunzip(Base64.getDecoder().decode(message.get("gzip").asText()))
+                        : objectMapper.writeValueAsBytes(message.get("payload"));
+                String destination = message.path("destination").asText();
+                if (INVALIDATION_DESTINATION.equals(destination)) {
+                    eventPublisher.publishEvent(objectMapper.readValue(json, CacheInvalidationDTO.class));
+                } else {
+                    messagingTemplate.send(destination, MessageBuilder.withPayload(json)
+                            .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+                            .build());
+                }
+                receivedCounter.increment();
+            }
+        } catch (Exception e) {
+            // Log the error but keep listening for further notifications
+            logger.error("Could not deliver backplane notification: {}", e.getMessage());
+        }
+    }
+
+    // A jump in a node's sequence means notifications were lost, typically while the channel reconnected
+    private void trackSequence(String node, long seq) {
+        Long last = lastSequenceByNode.put(node, seq);
+        if (last != null && seq > last + 1) {
+            missedCounter.increment(seq - last - 1);
+            logger.warn("Missed {} backplane notifications from node {}, dropping cached state", seq - last - 1, node);
+            for (CacheInvalidationDTO.Cache cache : CacheInvalidationDTO.Cache.values()) {
+                eventPublisher.publishEvent(new CacheInvalidationDTO(cache, null));
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static final class OutgoingMessage {
+        private final String destination;
+        private final byte[] json;
+
+        private OutgoingMessage(String destination, byte[] json) {
+            this.destination = destination;
+            this.json = json;
+        }
+    }
+}
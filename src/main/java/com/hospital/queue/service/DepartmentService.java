@@ -11,7 +11,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class DepartmentService {
@@ -25,18 +24,15 @@ public class DepartmentService {
     }
 
     public List<DepartmentDTO> getAllDepartments() {
-        return departmentRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return departmentRepository.findAllAsDto();
     }
     
     public List<DepartmentDTO> getDepartmentsByHospitalId(Long hospitalId) {
-        Hospital hospital = hospitalRepository.findById(hospitalId)
-                .orElseThrow(() -> new ResourceNotFoundException("Hospital not found with id: " + hospitalId));
+        if (!hospitalRepository.existsById(hospitalId)) {
+            throw new ResourceNotFoundException("Hospital not found with id: " + hospitalId);
+        }
         
-        return hospital.getDepartments().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return departmentRepository.findAsDtoByHospitalId(hospitalId);
     }
 
     public DepartmentDTO getDepartmentById(Long id) {
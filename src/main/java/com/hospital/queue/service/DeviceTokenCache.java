@@ -0,0 +1,185 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.CacheInvalidationDTO;
+import com.hospital.queue.model.PatientDevice;
+import com.hospital.queue.repository.PatientDeviceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process cache of device tokens by patient ID.
+ *
+ * Tokens only change through {@link PatientDeviceService} and the {@link DeviceTokenPruner},
+ * both of which invalidate the affected patients. Invalidations are passed on to the other
+ * nodes through the {@link MessageBackplane}; as they can get lost on the way, entries also
+ * expire after {@code app.push.token-cache-ttl-ms}.
+ */
+@Service
+public class DeviceTokenCache {
+
+    private final PatientDeviceRepository patientDeviceRepository;
+    private final MessageBackplane backplane;
+    private final Map<Long, CachedTokens> tokensByPatient;
+    private final Duration timeToLive;
+    private final Clock clock;
+
+    @Autowired
+    public DeviceTokenCache(PatientDeviceRepository patientDeviceRepository,
+                            MessageBackplane backplane,
+                            @Value("${app.push.token-cache-size:10000}") int cacheSize,
+                            @Value("${app.push.token-cache-ttl-ms:60000}") long ttlMillis) {
+        this(patientDeviceRepository, backplane, cacheSize, Duration.ofMillis(ttlMillis), Clock.systemUTC());
+    }
+
+    DeviceTokenCache(PatientDeviceRepository patientDeviceRepository, MessageBackplane backplane,
+                     int cacheSize, Duration timeToLive, Clock clock) {
+        this.patientDeviceRepository = patientDeviceRepository;
+        this.backplane = backplane;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.tokensByPatient = Collections.synchronizedMap(new LinkedHashMap<Long, CachedTokens>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedTokens> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Get the device tokens of a patient
+     *
+     * @param patientId Patient ID
+     * @return Device tokens, possibly empty; the list must not be modified
+     */
+    public List<String> getTokens(Long patientId) {
+        return getTokens(Collections.singletonList(patientId)).get(patientId);
+    }
+
+    /**
+     * Get the device tokens of many patients, loading every miss with a single query
+     *
+     * @param patientIds Patient IDs
+     * @return Device tokens for every requested patient, possibly empty
+     */
+    public Map<Long, List<String>> getTokens(Collection<Long> patientIds) {
+        Map<Long, List<String>> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        Instant now = clock.instant();
+        for (Long patientId : patientIds) {
+            CachedTokens cached = tokensByPatient.get(patientId);
+            if (cached != null && now.isBefore(cached.expiresAt)) {
+                result.put(patientId, cached.tokens);
+            } else {
+                missing.add(patientId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Long, List<String>> loaded = new HashMap<>();
+            for (Long patientId : missing) {
+                loaded.put(patientId, new ArrayList<>());
+            }
+            for (PatientDevice device : patientDeviceRepository.findByPatientIdIn(missing)) {
+                loaded.get(device.getPatientId()).add(device.getDeviceToken());
+            }
+            Instant expiresAt = now.plus(timeToLive);
+            loaded.forEach((patientId, tokens) -> {
+                List<String> cached = Collections.unmodifiableList(tokens);
+                tokensByPatient.put(patientId, new CachedTokens(cached, expiresAt));
+                result.put(patientId, cached);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Forget the cached tokens of a patient, here and on the other nodes. Inside a transaction
+     * the entry is dropped again after commit, so a read racing with the change cannot cache
+     * the old tokens, and the other nodes are only told once the change is visible to them.
+     *
+     * @param patientId Patient ID
+     */
+    public void invalidate(Long patientId) {
+        tokensByPatient.remove(patientId);
+        invalidateAfterCommit(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.DEVICE_TOKENS, patientId),
+                () -> tokensByPatient.remove(patientId));
+    }
+
+    /**
+     * Forget every cached token, here and on the other nodes, for changes that touch too many
+     * patients to name them one by one.
+     */
+    public void invalidateAll() {
+        tokensByPatient.clear();
+        invalidateAfterCommit(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.DEVICE_TOKENS, null),
+                tokensByPatient::clear);
+    }
+
+    private void invalidateAfterCommit(CacheInvalidationDTO invalidation, Runnable dropLocally) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dropLocally.run();
+                    backplane.invalidate(invalidation);
+                }
+            });
+        } else {
+            backplane.invalidate(invalidation);
+        }
+    }
+
+    /**
+     * Drop the entries another node has invalidated.
+     */
+    @EventListener
+    public void onCacheInvalidation(CacheInvalidationDTO invalidation) {
+        if (invalidation.getCache() != CacheInvalidationDTO.Cache.DEVICE_TOKENS) {
+            return;
+        }
+        if (invalidation.getId() != null) {
+            tokensByPatient.remove(invalidation.getId());
+        } else {
+            tokensByPatient.clear();
+        }
+    }
+
+    /**
+     * Stop using a single token without reloading the patient's other tokens
+     *
+     * @param patientId Patient ID
+     * @param token Device token to drop
+     */
+    public void removeToken(Long patientId, String token) {
+        tokensByPatient.computeIfPresent(patientId, (id, cached) -> {
+            List<String> remaining = new ArrayList<>(cached.tokens);
+            remaining.remove(token);
+            return new CachedTokens(Collections.unmodifiableList(remaining), cached.expiresAt);
+        });
+    }
+
+    private static final class CachedTokens {
+        private final List<String> tokens;
+        private final Instant expiresAt;
+
+        private CachedTokens(List<String> tokens, Instant expiresAt) {
+            this.tokens = tokens;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
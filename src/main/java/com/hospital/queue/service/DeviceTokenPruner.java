@@ -0,0 +1,92 @@
+package com.hospital.queue.service;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.hospital.queue.repository.PatientDeviceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Removes device tokens that FCM reports as no longer valid.
+ *
+ * Tokens are dropped from the token cache as soon as FCM rejects them and deleted from
+ * the database in periodic batches, so a burst of failures costs a handful of deletes.
+ */
+@Service
+public class DeviceTokenPruner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceTokenPruner.class);
+
+    private final PatientDeviceRepository patientDeviceRepository;
+    private final DeviceTokenCache deviceTokenCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    // Token -> patient ID, waiting for the next prune run
+    private final Map<String, Long> pendingTokens = new ConcurrentHashMap<>();
+
+    public DeviceTokenPruner(PatientDeviceRepository patientDeviceRepository,
+                             DeviceTokenCache deviceTokenCache,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.push.prune-batch-size:500}") int batchSize) {
+        this.patientDeviceRepository = patientDeviceRepository;
+        this.deviceTokenCache = deviceTokenCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Whether FCM will never accept messages for a token that failed with this error
+     */
+    public static boolean isPermanentFailure(MessagingErrorCode errorCode) {
+        return errorCode == MessagingErrorCode.UNREGISTERED || errorCode == MessagingErrorCode.INVALID_ARGUMENT;
+    }
+
+    /**
+     * Schedule a token for deletion and stop sending to it right away
+     *
+     * @param patientId Patient the token belongs to
+     * @param token Device token rejected by FCM
+     */
+    public void markForPruning(Long patientId, String token) {
+        deviceTokenCache.removeToken(patientId, token);
+        pendingTokens.put(token, patientId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.push.prune-interval-ms:30000}")
+    public void pruneInvalidTokens() {
+        while (!pendingTokens.isEmpty()) {
+            Map<String, Long> batch = new HashMap<>();
+            Iterator<Map.Entry<String, Long>> iterator = pendingTokens.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<String, Long> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+
+            try {
+                List<String> tokens = new ArrayList<>(batch.keySet());
+                Integer deleted = transactionTemplate.execute(status -> patientDeviceRepository.deleteByDeviceTokenIn(tokens));
+                // A reload between markForPruning and the delete may have cached the token again
+                batch.values().stream().distinct().forEach(deviceTokenCache::invalidate);
+                logger.info("Pruned {} invalid device tokens", deleted);
+            } catch (Exception e) {
+                // Put the batch back and try again on the next run
+                batch.forEach(pendingTokens::putIfAbsent);
+                logger.error("Error pruning {} invalid device tokens: {}", batch.size(), e.getMessage(), e);
+                return;
+            }
+        }
+    }
+}
@@ -17,10 +17,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Service for sending notifications via Firebase Cloud Messaging
@@ -36,11 +33,26 @@ public class FirebaseMessagingService {
     @Value("${firebase.database.url:#{null}}")
     private String databaseUrl;
     
+    // Disabled for benchmarks and other runs without service account credentials
+    @Value("${firebase.enabled:true}")
+    private boolean enabled;
+    
+    private final PushNotificationDispatcher pushNotificationDispatcher;
+    
+    public FirebaseMessagingService(PushNotificationDispatcher pushNotificationDispatcher) {
+        this.pushNotificationDispatcher = pushNotificationDispatcher;
+    }
+    
     /**
      * Initialize Firebase with service account credentials
      */
     @PostConstruct
     public void initialize() {
+        if (!enabled) {
+            logger.info("Firebase is disabled, push notifications will not be delivered");
+            return;
+        }
+        
         try {
             logger.info("Initializing Firebase with credentials path: {}", credentialsPath);
             logger.info("Database URL: {}", databaseUrl);
@@ -111,45 +123,27 @@ public class FirebaseMessagingService {
     }
     
     /**
-     * Send a notification to multiple devices
+     * Send a notification to multiple devices.
+     * Messages are handed to the asynchronous delivery pipeline; this method never waits for FCM.
      * 
      * @param notification Notification data
      * @param tokens List of device tokens
-     * @return List of message IDs
+     * @return true if every message was accepted by the pipeline
      */
-    public List<String> sendMulticastNotification(PatientNotificationDto notification, List<String> tokens) {
-        try {
-            if (tokens.isEmpty()) {
-                logger.warn("No device tokens provided for multicast notification");
-                return Collections.emptyList();
-            }
-            
-            logger.info("Sending notifications to {} devices individually instead of batch", tokens.size());
-            List<String> messageIds = new ArrayList<>();
-            List<String> failedTokens = new ArrayList<>();
-            
-            // Send messages individually instead of using multicast
-            for (String token : tokens) {
-                try {
-                    // Create individual message for each token
-                    Message message = createMessage(notification, token);
-                    String messageId = FirebaseMessaging.getInstance().send(message);
-                    messageIds.add(messageId);
-                    logger.info("Successfully sent message to token {}: {}", token, messageId);
-                } catch (FirebaseMessagingException e) {
-                    logger.error("Failed to send message to token {}: {}", token, e.getMessage());
-                    failedTokens.add(token);
-                }
-            }
-            
-            logger.info("Completed sending notifications. Success: {}, Failure: {}", 
-                    messageIds.size(), failedTokens.size());
-            
-            return messageIds;
-        } catch (Exception e) {
-            logger.error("Error in multicast notification process: {}", e.getMessage(), e);
-            throw new RuntimeException("Error in multicast notification process", e);
+    public boolean sendMulticastNotification(PatientNotificationDto notification, List<String> tokens) {
+        if (tokens.isEmpty()) {
+            logger.warn("No device tokens provided for multicast notification");
+            return false;
+        }
+        
+        boolean allAccepted = true;
+        for (String token : tokens) {
+            Message message = createMessage(notification, token);
+            allAccepted &= pushNotificationDispatcher.submit(notification.getPatientId(), token, message);
         }
+        
+        logger.info("Queued notification for patient {} to {} device(s)", notification.getPatientId(), tokens.size());
+        return allAccepted;
     }
     
     /**
@@ -157,20 +151,11 @@ public class FirebaseMessagingService {
      * 
      * @param notification Notification data
      * @param token Device token
-     * @return Message ID
+     * @return Future completing with the message ID
      */
-    public String sendNotificationAsync(PatientNotificationDto notification, String token) {
-        try {
-            Message message = createMessage(notification, token);
-            ApiFuture<String> future = FirebaseMessaging.getInstance().sendAsync(message);
-            String response = future.get();
-            logger.info("Successfully sent async message: {}", response);
-            return response;
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error sending async Firebase notification: {}", e.getMessage(), e);
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Error sending async Firebase notification", e);
-        }
+    public ApiFuture<String> sendNotificationAsync(PatientNotificationDto notification, String token) {
+        Message message = createMessage(notification, token);
+        return FirebaseMessaging.getInstance().sendAsync(message);
     }
     
     /**
@@ -0,0 +1,41 @@
+package com.hospital.queue.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.SendResponse;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link PushGateway} backed by the Firebase Admin SDK. Each message of a batch goes out
+ * as its own HTTP v1 request, FCM having retired the batch send endpoint.
+ */
+@Service
+public class FirebasePushGateway implements PushGateway {
+
+    @Override
+    public ApiFuture<List<PushResult>> sendAll(List<Message> messages) {
+        ApiFuture<BatchResponse> response = FirebaseMessaging.getInstance().sendEachAsync(messages);
+        return ApiFutures.transform(response, FirebasePushGateway::toResults, MoreExecutors.directExecutor());
+    }
+
+    private static List<PushResult> toResults(BatchResponse batchResponse) {
+        List<PushResult> results = new ArrayList<>();
+        for (SendResponse response : batchResponse.getResponses()) {
+            if (response.isSuccessful()) {
+                results.add(PushResult.success(response.getMessageId()));
+            } else {
+                FirebaseMessagingException exception = response.getException();
+                results.add(PushResult.failure(exception.getMessagingErrorCode(), exception.getMessage()));
+            }
+        }
+        return results;
+    }
+}
@@ -27,7 +27,7 @@ public class HospitalService {
     }
 
     public List<HospitalDTO> getAllHospitals() {
-        return hospitalRepository.findAll().stream()
+        return hospitalRepository.findAllWithDepartments().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -0,0 +1,34 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.CacheInvalidationDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Hands messages straight to this node's message broker.
+ *
+ * Enough for a single node with the simple broker. With the STOMP broker relay the external
+ * broker does the fan-out between nodes, but nothing carries cache invalidations: nodes
+ * sharing a relay should use the {@code postgres} backplane for that.
+ */
+@Service
+@ConditionalOnProperty(name = "app.websocket.backplane", havingValue = "local", matchIfMissing = true)
+public class LocalMessageBackplane implements MessageBackplane {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public LocalMessageBackplane(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Override
+    public void publish(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+
+    @Override
+    public void invalidate(CacheInvalidationDTO invalidation) {
+        // No other node to tell
+    }
+}
@@ -0,0 +1,26 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.CacheInvalidationDTO;
+
+/**
+ * Carries messages for WebSocket subscribers to every node of the application.
+ *
+ * Services publish a message once; the backplane makes sure each node hands it to the
+ * subscribers connected to that node. It also carries invalidations of the state each
+ * node caches in memory. Which implementation is used is chosen with
+ * {@code app.websocket.backplane}.
+ */
+public interface MessageBackplane {
+
+    /**
+     * Deliver a payload to the subscribers of a destination such as {@code /topic/queue/1},
+     * wherever they are connected.
+     */
+    void publish(String destination, Object payload);
+
+    /**
+     * Tell the other nodes to drop a cache entry this node has changed. They receive it as a
+     * {@link CacheInvalidationDTO} application event; this node is not notified.
+     */
+    void invalidate(CacheInvalidationDTO invalidation);
+}
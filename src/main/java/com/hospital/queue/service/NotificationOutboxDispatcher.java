@@ -0,0 +1,190 @@
+package com.hospital.queue.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.queue.dto.NotificationDTO;
+import com.hospital.queue.model.NotificationOutbox;
+import com.hospital.queue.repository.NotificationOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers notification outbox entries.
+ *
+ * Pending entries are locked in batches with SKIP LOCKED, handed to the WebSocket broker
+ * and the push pipeline (both non-blocking), and marked dispatched in the same short
+ * transaction. A committed transaction that wrote entries wakes the dispatcher
+ * immediately; the periodic poll picks up anything left behind, e.g. after a restart
+ * or a failed attempt.
+ */
+@Service
+public class NotificationOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxDispatcher.class);
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final PatientDeviceService patientDeviceService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int retentionHours;
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public NotificationOutboxDispatcher(NotificationOutboxRepository outboxRepository,
+                                        NotificationService notificationService,
+                                        PatientDeviceService patientDeviceService,
+                                        ObjectMapper objectMapper,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${app.outbox.batch-size:100}") int batchSize,
+                                        @Value("${app.outbox.max-attempts:5}") int maxAttempts,
+                                        @Value("${app.outbox.retention-hours:24}") int retentionHours) {
+        this.outboxRepository = outboxRepository;
+        this.notificationService = notificationService;
+        this.patientDeviceService = patientDeviceService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retentionHours = retentionHours;
+    }
+
+    /**
+     * Drain the outbox as soon as possible. Wake-ups arriving while one is pending are merged.
+     */
+    public void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                wakeUpPending.set(false);
+                drainLock.lock();
+                try {
+                    drain();
+                } finally {
+                    drainLock.unlock();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        // A drain already in progress will pick up whatever this poll would have found
+        if (!drainLock.tryLock()) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Scheduled(cron = "${app.outbox.cleanup-cron:0 0 * * * *}")
+    public void purgeDispatched() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        Integer deleted = transactionTemplate.execute(status -> outboxRepository.deleteDispatchedBefore(cutoff));
+        if (deleted != null && deleted > 0) {
+            logger.info("Purged {} dispatched outbox entries", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void drain() {
+        try {
+            BatchResult result;
+            do {
+                result = transactionTemplate.execute(status -> dispatchBatch());
+            } while (result != null && result.size == batchSize && result.failures == 0);
+        } catch (Exception e) {
+            logger.error("Error draining notification outbox: {}", e.getMessage(), e);
+        }
+    }
+
+    // Failed entries stay pending until the next poll instead of being retried in a tight loop
+    private BatchResult dispatchBatch() {
+        List<NotificationOutbox> batch = outboxRepository.lockPendingBatch(batchSize);
+        // Push notifications for the whole batch are resolved in one query; a patient with
+        // several entries in the batch only gets a push for the latest status
+        Map<Long, String> pushStatusByPatient = new LinkedHashMap<>();
+        int failures = 0;
+        for (NotificationOutbox entry : batch) {
+            entry.setAttempts(entry.getAttempts() + 1);
+            try {
+                dispatch(entry, pushStatusByPatient);
+                entry.setDispatchedAt(LocalDateTime.now());
+            } catch (Exception e) {
+                failures++;
+                entry.setLastError(truncate(e.getMessage()));
+                if (entry.getAttempts() >= maxAttempts) {
+                    logger.error("Giving up on outbox entry {} for patient {} after {} attempts: {}",
+                            entry.getId(), entry.getPatientId(), entry.getAttempts(), e.getMessage());
+                    entry.setDispatchedAt(LocalDateTime.now());
+                } else {
+                    logger.warn("Outbox entry {} for patient {} failed, will retry: {}",
+                            entry.getId(), entry.getPatientId(), e.getMessage());
+                }
+            }
+        }
+        if (!pushStatusByPatient.isEmpty()) {
+            int queued = patientDeviceService.sendStatusNotifications(pushStatusByPatient);
+            logger.debug("Queued push notifications for {} of {} patients", queued, pushStatusByPatient.size());
+        }
+        outboxRepository.saveAll(batch);
+        return new BatchResult(batch.size(), failures);
+    }
+
+    private void dispatch(NotificationOutbox entry, Map<Long, String> pushStatusByPatient) throws Exception {
+        switch (entry.getEventType()) {
+            case PATIENT_STATUS:
+                notificationService.sendNotification(objectMapper.readValue(entry.getPayload(), NotificationDTO.class));
+                pushStatusByPatient.remove(entry.getPatientId());
+                pushStatusByPatient.put(entry.getPatientId(), entry.getStatus());
+                break;
+            default:
+                throw new IllegalStateException("Unknown outbox event type: " + entry.getEventType());
+        }
+    }
+
+    private String truncate(String message) {
+        if (message == null || message.length() <= 500) {
+            return message;
+        }
+        return message.substring(0, 500);
+    }
+
+    private static final class BatchResult {
+        private final int size;
+        private final int failures;
+
+        private BatchResult(int size, int failures) {
+            this.size = size;
+            this.failures = failures;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.hospital.queue.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.queue.model.NotificationOutbox;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.repository.NotificationOutboxRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Records patient notifications in the outbox table.
+ *
+ * Entries are written in the caller's transaction, so a notification exists if and only
+ * if the change that caused it committed. Nothing is sent here; the
+ * {@link NotificationOutboxDispatcher} delivers the entries once the transaction commits.
+ */
+@Service
+public class NotificationOutboxService {
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final NotificationOutboxDispatcher dispatcher;
+    private final ObjectMapper objectMapper;
+
+    public NotificationOutboxService(NotificationOutboxRepository outboxRepository,
+                                     NotificationService notificationService,
+                                     NotificationOutboxDispatcher dispatcher,
+                                     ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.notificationService = notificationService;
+        this.dispatcher = dispatcher;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Queue a WebSocket and push notification about the patient's current status
+     *
+     * @param patient Patient to notify
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueStatusNotification(Patient patient) {
+        NotificationOutbox entry = new NotificationOutbox();
+        entry.setEventType(NotificationOutbox.EventType.PATIENT_STATUS);
+        entry.setPatientId(patient.getId());
+        entry.setQueueId(patient.getQueue().getId());
+        entry.setStatus(patient.getStatus().toString());
+        try {
+            // Snapshot the notification now, the patient may have moved on by the time it is sent
+            entry.setPayload(objectMapper.writeValueAsString(notificationService.buildNotification(patient)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize notification for patient " + patient.getId(), e);
+        }
+        outboxRepository.save(entry);
+        wakeDispatcherAfterCommit();
+    }
+
+    // One wake-up per transaction, however many entries it wrote
+    private void wakeDispatcherAfterCommit() {
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(NotificationOutboxService.this);
+                if (status == STATUS_COMMITTED) {
+                    dispatcher.wakeUp();
+                }
+            }
+        });
+    }
+}
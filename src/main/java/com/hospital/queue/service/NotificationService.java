@@ -1,8 +1,8 @@
 package com.hospital.queue.service;
 
 import com.hospital.queue.dto.NotificationDTO;
+import com.hospital.queue.dto.QueueEventDTO;
 import com.hospital.queue.model.Patient;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -10,29 +10,26 @@ import java.time.LocalDateTime;
 @Service
 public class NotificationService {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    
-    public NotificationService(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    private final MessageBackplane backplane;
+    private final QueueUpdateCoalescer queueUpdateCoalescer;
+
+    public NotificationService(MessageBackplane backplane, QueueUpdateCoalescer queueUpdateCoalescer) {
+        this.backplane = backplane;
+        this.queueUpdateCoalescer = queueUpdateCoalescer;
     }
 
     public void sendNotification(Patient patient) {
+        sendNotification(buildNotification(patient));
+    }
+
+    /**
+     * Send a prepared notification to the sessions of the patient. Used by the outbox dispatcher,
+     * which replays notifications captured when the transaction that caused them ran.
+     */
+    public void sendNotification(NotificationDTO notification) {
         try {
-            NotificationDTO notification = new NotificationDTO();
-            notification.setPatientId(patient.getId());
-            notification.setPatientName(patient.getName());
-            notification.setQueueId(patient.getQueue().getId());
-            notification.setQueueName(patient.getQueue().getName());
-            notification.setDepartmentName(patient.getQueue().getDepartment().getName());
-            notification.setStatus(patient.getStatus());
-            notification.setQueuePosition(patient.getQueuePosition());
-            notification.setTimestamp(LocalDateTime.now());
-            
-            // Send to specific patient channel
-            messagingTemplate.convertAndSend("/topic/patient/" + patient.getId(), notification);
-            
-            // Send to queue channel
-            messagingTemplate.convertAndSend("/topic/queue/" + patient.getQueue().getId(), notification);
+            // Send to the patient's own sessions; queue subscribers get the matching delta event
+            backplane.publish("/user/" + notification.getPatientId() + "/queue/notifications", notification);
         } catch (Exception e) {
             // Log the error but don't let it disrupt the application flow
             System.err.println("WebSocket notification failed: " + e.getMessage());
@@ -40,13 +37,61 @@ public class NotificationService {
         }
     }
 
+    public NotificationDTO buildNotification(Patient patient) {
+        NotificationDTO notification = new NotificationDTO();
+        notification.setPatientId(patient.getId());
+        notification.setPatientName(patient.getName());
+        notification.setQueueId(patient.getQueue().getId());
+        notification.setQueueName(patient.getQueue().getName());
+        notification.setDepartmentName(patient.getQueue().getDepartment().getName());
+        notification.setStatus(patient.getStatus());
+        notification.setQueuePosition(patient.getQueuePosition());
+        notification.setTimestamp(LocalDateTime.now());
+        return notification;
+    }
+
+    /**
+     * Tell queue subscribers to re-fetch the whole queue.
+     */
     public void broadcastQueueUpdate(Long queueId) {
-        try {
-            messagingTemplate.convertAndSend("/topic/queue/" + queueId, "queue-updated");
-        } catch (Exception e) {
-            // Log the error but don't let it disrupt the application flow
-            System.err.println("WebSocket queue broadcast failed: " + e.getMessage());
-            // The application can continue without WebSocket notifications
-        }
+        publish(new QueueEventDTO(queueId, QueueEventDTO.EventType.QUEUE_UPDATED));
+    }
+
+    public void publishPatientJoined(Patient patient) {
+        publish(patientEvent(patient, QueueEventDTO.EventType.PATIENT_JOINED));
+    }
+
+    public void publishStatusChanged(Patient patient, Patient.PatientStatus previousStatus) {
+        QueueEventDTO event = patientEvent(patient, QueueEventDTO.EventType.STATUS_CHANGED);
+        event.setPreviousStatus(previousStatus);
+        publish(event);
+    }
+
+    public void publishPositionChanged(Patient patient, Long afterPatientId) {
+        QueueEventDTO event = patientEvent(patient, QueueEventDTO.EventType.POSITION_CHANGED);
+        event.setAfterPatientId(afterPatientId);
+        publish(event);
+    }
+
+    /**
+     * Version of the last event published for a queue. Snapshots returned by the REST API
+     * carry this value so clients know which events they still have to apply.
+     */
+    public long currentVersion(Long queueId) {
+        return queueUpdateCoalescer.currentVersion(queueId);
+    }
+
+    private QueueEventDTO patientEvent(Patient patient, QueueEventDTO.EventType type) {
+        QueueEventDTO event = new QueueEventDTO(patient.getQueue().getId(), type);
+        event.setPatientId(patient.getId());
+        event.setPatientName(patient.getName());
+        event.setStatus(patient.getStatus());
+        event.setQueuePosition(patient.getQueuePosition());
+        return event;
+    }
+
+    // Events are versioned and sent by the coalescer, one message per queue and transaction
+    private void publish(QueueEventDTO event) {
+        queueUpdateCoalescer.submit(event);
     }
 }
@@ -0,0 +1,77 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.repository.PatientHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Moves finished patients out of the live patients table into the partitioned history table,
+ * so the hot queue queries only ever see the current day's patients. Each batch is moved in
+ * its own short transaction.
+ */
+@Service
+public class PatientArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientArchiver.class);
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final PatientHistoryRepository patientHistoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int archiveAfterHours;
+    private final int batchSize;
+
+    public PatientArchiver(PatientHistoryRepository patientHistoryRepository,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.archive.after-hours:12}") int archiveAfterHours,
+                           @Value("${app.archive.batch-size:1000}") int batchSize) {
+        this.patientHistoryRepository = patientHistoryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archiveAfterHours = archiveAfterHours;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 */15 * * * *}")
+    public void archive() {
+        try {
+            ensurePartitions();
+            
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(archiveAfterHours);
+            int total = 0;
+            Integer moved;
+            do {
+                moved = transactionTemplate.execute(status -> patientHistoryRepository.archiveFinishedPatients(cutoff, batchSize));
+                total += moved != null ? moved : 0;
+            } while (moved != null && moved == batchSize);
+            
+            if (total > 0) {
+                logger.info("Archived {} finished patients who joined before {}", total, cutoff);
+            }
+        } catch (Exception e) {
+            logger.error("Error archiving finished patients: {}", e.getMessage(), e);
+        }
+    }
+
+    // Partitions for this and next month always exist before rows for them are archived
+    private void ensurePartitions() {
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= 1; i++) {
+            LocalDate monthStart = currentMonth.plusMonths(i);
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS patient_history_%s PARTITION OF patient_history FOR VALUES FROM ('%s') TO ('%s')",
+                    monthStart.format(PARTITION_SUFFIX), monthStart, monthStart.plusMonths(1)));
+        }
+    }
+}
@@ -3,19 +3,19 @@ package com.hospital.queue.service;
 import com.hospital.queue.dto.DeviceRegistrationDto;
 import com.hospital.queue.dto.PatientNotificationDto;
 import com.hospital.queue.exception.ResourceNotFoundException;
-import com.hospital.queue.model.Patient;
 import com.hospital.queue.model.PatientDevice;
-import com.hospital.queue.model.Queue;
+import com.hospital.queue.repository.NotificationTargetProjection;
 import com.hospital.queue.repository.PatientDeviceRepository;
 import com.hospital.queue.repository.PatientRepository;
-import com.hospital.queue.repository.QueueRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -28,19 +28,19 @@ public class PatientDeviceService {
     
     private final PatientDeviceRepository patientDeviceRepository;
     private final PatientRepository patientRepository;
-    private final QueueRepository queueRepository;
     private final FirebaseMessagingService firebaseMessagingService;
+    private final DeviceTokenCache deviceTokenCache;
     
     @Autowired
     public PatientDeviceService(
             PatientDeviceRepository patientDeviceRepository,
             PatientRepository patientRepository,
-            QueueRepository queueRepository,
-            FirebaseMessagingService firebaseMessagingService) {
+            FirebaseMessagingService firebaseMessagingService,
+            DeviceTokenCache deviceTokenCache) {
         this.patientDeviceRepository = patientDeviceRepository;
         this.patientRepository = patientRepository;
-        this.queueRepository = queueRepository;
         this.firebaseMessagingService = firebaseMessagingService;
+        this.deviceTokenCache = deviceTokenCache;
     }
     
     /**
@@ -74,6 +74,7 @@ public class PatientDeviceService {
                         
                         logger.info("Saving new device token for patient: {}", registrationDto.getPatientId());
                         PatientDevice savedDevice = patientDeviceRepository.save(device);
+                        deviceTokenCache.invalidate(registrationDto.getPatientId());
                         logger.info("Device token saved with ID: {}", savedDevice.getId());
                         return savedDevice;
                     });
@@ -90,10 +91,7 @@ public class PatientDeviceService {
      * @return List of device tokens
      */
     public List<String> getDeviceTokensForPatient(Long patientId) {
-        return patientDeviceRepository.findByPatientId(patientId)
-                .stream()
-                .map(PatientDevice::getDeviceToken)
-                .collect(Collectors.toList());
+        return deviceTokenCache.getTokens(patientId);
     }
     
     /**
@@ -103,6 +101,8 @@ public class PatientDeviceService {
      */
     @Transactional
     public void deleteDevice(Long deviceId) {
+        patientDeviceRepository.findById(deviceId)
+                .ifPresent(device -> deviceTokenCache.invalidate(device.getPatientId()));
         patientDeviceRepository.deleteById(deviceId);
     }
     
@@ -114,6 +114,7 @@ public class PatientDeviceService {
     @Transactional
     public void deleteAllDevicesForPatient(Long patientId) {
         patientDeviceRepository.deleteByPatientId(patientId);
+        deviceTokenCache.invalidate(patientId);
     }
     
     /**
@@ -125,78 +126,116 @@ public class PatientDeviceService {
      */
     public boolean sendStatusNotification(Long patientId, String status) {
         try {
-            // Get patient details
-            Patient patient = patientRepository.findById(patientId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + patientId));
+            List<NotificationTargetProjection> targets =
+                    patientRepository.findNotificationTargets(Collections.singletonList(patientId));
             
-            // Get queue details
-            Queue queue = queueRepository.findById(patient.getQueue().getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Queue not found with id: " + patient.getQueue().getId()));
-            
-            // Get device tokens
-            List<String> deviceTokens = getDeviceTokensForPatient(patientId);
-            
-            if (deviceTokens.isEmpty()) {
-                logger.warn("No device tokens found for patient: {}", patientId);
-                return false;
+            if (targets.isEmpty()) {
+                throw new ResourceNotFoundException("Patient not found with id: " + patientId);
             }
             
-            // Create notification with explicit title and body
-            PatientNotificationDto notification = new PatientNotificationDto(
-                    patient.getId(),
-                    status,
-                    patient.getQueuePosition(),
-                    patient.getQueue().getId(),
-                    null,
-                    queue.getName()
-            );
-            
-            // Set explicit title and body for FCM based on status
-            String title;
-            String body;
+            return sendToTargets(status, targets.get(0), getDeviceTokensForPatient(patientId));
+        } catch (Exception e) {
+            logger.error("Error sending notification to patient {}: {}", patientId, e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Send status notifications to many patients. Patients and queues are resolved with a
+     * single query, and device tokens with at most one more for patients not yet cached.
+     * 
+     * @param statusByPatientId New status for each patient
+     * @return Number of patients whose notifications were queued
+     */
+    public int sendStatusNotifications(Map<Long, String> statusByPatientId) {
+        if (statusByPatientId.isEmpty()) {
+            return 0;
+        }
+        
+        try {
+            Map<Long, NotificationTargetProjection> targetsByPatient = patientRepository
+                    .findNotificationTargets(statusByPatientId.keySet())
+                    .stream()
+                    .collect(Collectors.toMap(NotificationTargetProjection::getPatientId, target -> target));
+            Map<Long, List<String>> tokensByPatient = deviceTokenCache.getTokens(targetsByPatient.keySet());
             
-            switch (status) {
-                case "NOTIFIED":
-                    title = "It's Almost Your Turn! - " + queue.getName();
-                    body = "Please proceed to the waiting area. You will be called shortly.";
-                    break;
-                case "SERVING":
-                    title = "You're Being Served Now - " + queue.getName();
-                    body = "Please proceed to the service counter immediately.";
-                    break;
-                case "WAITING":
-                    title = "Queue Update - " + queue.getName();
-                    body = "Your current position in queue: " + patient.getQueuePosition();
-                    break;
-                case "SERVED":
-                    title = "Service Completed - " + queue.getName();
-                    body = "Thank you for visiting us today!";
-                    break;
-                case "TEST":
-                    title = "Test Notification";
-                    body = "This is a test notification from Hospital Queue System";
-                    break;
-                default:
-                    title = "Queue Update: " + queue.getName();
-                    body = "Your status has been updated to: " + status;
+            int queued = 0;
+            for (Map.Entry<Long, String> entry : statusByPatientId.entrySet()) {
+                NotificationTargetProjection target = targetsByPatient.get(entry.getKey());
+                if (target == null) {
+                    logger.warn("Patient {} no longer exists, skipping notification", entry.getKey());
+                } else if (sendToTargets(entry.getValue(), target, tokensByPatient.get(entry.getKey()))) {
+                    queued++;
+                }
             }
-            
-            notification.setTitle(title);
-            notification.setBody(body);
-            
-            // Note: Additional data like patientId, queueId, status, etc. are automatically
-            // added to the notification by FirebaseMessagingService.createDataPayload()
-            
-            logger.info("Sending notification with title: '{}', body: '{}'", title, body);
-            
-            // Send notification
-            firebaseMessagingService.sendMulticastNotification(notification, deviceTokens);
-            logger.info("Sent status notification to patient {} with {} device(s)", patientId, deviceTokens.size());
-            
-            return true;
+            return queued;
         } catch (Exception e) {
-            logger.error("Error sending notification to patient {}: {}", patientId, e.getMessage(), e);
+            logger.error("Error sending notifications to {} patients: {}", statusByPatientId.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+    
+    private boolean sendToTargets(String status, NotificationTargetProjection target, List<String> deviceTokens) {
+        Long patientId = target.getPatientId();
+        
+        if (deviceTokens.isEmpty()) {
+            logger.warn("No device tokens found for patient: {}", patientId);
             return false;
         }
+        
+        // Create notification with explicit title and body
+        PatientNotificationDto notification = new PatientNotificationDto(
+                patientId,
+                status,
+                target.getQueuePosition(),
+                target.getQueueId(),
+                null,
+                target.getQueueName()
+        );
+        
+        // Set explicit title and body for FCM based on status
+        String queueName = target.getQueueName();
+        String title;
+        String body;
+        
+        switch (status) {
+            case "NOTIFIED":
+                title = "It's Almost Your Turn! - " + queueName;
+                body = "Please proceed to the waiting area. You will be called shortly.";
+                break;
+            case "SERVING":
+                title = "You're Being Served Now - " + queueName;
+                body = "Please proceed to the service counter immediately.";
+                break;
+            case "WAITING":
+                title = "Queue Update - " + queueName;
+                body = "Your current position in queue: " + target.getQueuePosition();
+                break;
+            case "SERVED":
+                title = "Service Completed - " + queueName;
+                body = "Thank you for visiting us today!";
+                break;
+            case "TEST":
+                title = "Test Notification";
+                body = "This is a test notification from Hospital Queue System";
+                break;
+            default:
+                title = "Queue Update: " + queueName;
+                body = "Your status has been updated to: " + status;
+        }
+        
+        notification.setTitle(title);
+        notification.setBody(body);
+        
+        // Note: Additional data like patientId, queueId, status, etc. are automatically
+        // added to the notification by FirebaseMessagingService.createDataPayload()
+        
+        logger.info("Sending notification with title: '{}', body: '{}'", title, body);
+        
+        // Hand the notification to the asynchronous delivery pipeline
+        boolean queued = firebaseMessagingService.sendMulticastNotification(notification, deviceTokens);
+        logger.info("Queued status notification to patient {} with {} device(s)", patientId, deviceTokens.size());
+        
+        return queued;
     }
 }
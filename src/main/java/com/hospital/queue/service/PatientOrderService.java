@@ -0,0 +1,219 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.PatientMoveDTO;
+import com.hospital.queue.exception.ResourceNotFoundException;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.Queue;
+import com.hospital.queue.repository.PatientRepository;
+import com.hospital.queue.repository.QueueRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Order in which the waiting patients of a queue are called.
+ *
+ * Patients are sorted by a sparse order key instead of by their queue position, which is
+ * the number handed out on joining and never changes. New patients get keys
+ * {@link Patient#ORDER_KEY_GAP} apart, and moving a patient only gives it a key halfway
+ * between its new neighbours: a single-row update however many patients are waiting.
+ * When moves use up the room between two patients the queue is renumbered, normally
+ * ahead of time by a background job so moves never have to wait for it.
+ */
+@Service
+public class PatientOrderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientOrderService.class);
+
+    private final PatientRepository patientRepository;
+    private final QueueRepository queueRepository;
+    private final PatientService patientService;
+    private final NotificationService notificationService;
+    private final NotificationOutboxService notificationOutbox;
+    private final QueueEngine queueEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final long minGap;
+
+    public PatientOrderService(PatientRepository patientRepository,
+                               QueueRepository queueRepository,
+                               PatientService patientService,
+                               NotificationService notificationService,
+                               NotificationOutboxService notificationOutbox,
+                               QueueEngine queueEngine,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.order.min-gap:8}") long minGap) {
+        this.patientRepository = patientRepository;
+        this.queueRepository = queueRepository;
+        this.patientService = patientService;
+        this.notificationService = notificationService;
+        this.notificationOutbox = notificationOutbox;
+        this.queueEngine = queueEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.minGap = minGap;
+    }
+
+    /**
+     * Move a waiting patient directly before or after another waiting patient of the same queue.
+     */
+    @Transactional
+    public PatientDTO movePatient(Long id, PatientMoveDTO move) {
+        if ((move.getBeforePatientId() == null) == (move.getAfterPatientId() == null)) {
+            throw new IllegalArgumentException("Exactly one of beforePatientId and afterPatientId is required");
+        }
+
+        Patient patient = getWaitingPatient(id);
+        boolean before = move.getBeforePatientId() != null;
+        Long targetId = before ? move.getBeforePatientId() : move.getAfterPatientId();
+        return moveNextTo(patient, targetId, before);
+    }
+
+    /**
+     * Move a waiting patient so that it is the {@code position}-th of the queue's waiting patients
+     * to be called. The queue position the patient was given on joining does not change.
+     */
+    @Transactional
+    public PatientDTO movePatientToPosition(Long id, int position) {
+        if (position < 1) {
+            throw new IllegalArgumentException("Queue position must be at least 1");
+        }
+
+        Patient patient = getWaitingPatient(id);
+        Long queueId = patient.getQueue().getId();
+
+        // Only the patients up to the requested place are looked at, the patient itself excluded
+        List<Long> ahead = queueEngine.callablePatientIds(queueId, position + 1);
+        ahead.remove(patient.getId());
+        if (ahead.isEmpty()) {
+            return patientService.convertToDTO(patient);
+        }
+        if (ahead.size() >= position) {
+            return moveNextTo(patient, ahead.get(position - 1), true);
+        }
+        return moveNextTo(patient, ahead.get(ahead.size() - 1), false);
+    }
+
+    /**
+     * Renumber the queues in which moves have left little room between two waiting patients.
+     */
+    @Scheduled(fixedDelayString = "${app.order.renumber-interval-ms:60000}")
+    public void renumberCrowdedQueues() {
+        for (Long queueId : queueEngine.crowdedQueueIds(minGap)) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        queueRepository.lockById(queueId).ifPresent(this::renumber));
+            } catch (Exception e) {
+                logger.error("Error renumbering queue {}: {}", queueId, e.getMessage(), e);
+            }
+        }
+    }
+
+    private PatientDTO moveNextTo(Patient patient, Long targetId, boolean before) {
+        if (patient.getId().equals(targetId)) {
+            throw new IllegalArgumentException("A patient cannot be moved next to itself");
+        }
+
+        Long queueId = patient.getQueue().getId();
+        // Moves of a queue are serialized with each other and with renumbering by the queue's row lock
+        Queue queue = queueRepository.lockById(queueId)
+                .orElseThrow(() -> new ResourceNotFoundException("Queue not found with id: " + queueId));
+
+        Slot slot = slotNextTo(queue, patient.getId(), targetId, before);
+        if (slot == null) {
+            renumber(queue);
+            slot = slotNextTo(queue, patient.getId(), targetId, before);
+        }
+
+        patient.setOrderKey(slot.orderKey);
+        Patient updatedPatient = patientRepository.save(patient);
+        queueEngine.track(queueId, patient.getId(), patient.getStatus(), slot.orderKey);
+        logger.info("Patient {} moved {} patient {} in queue {}", patient.getId(), before ? "before" : "after", targetId, queueId);
+
+        // Publish the move to queue subscribers via WebSocket
+        notificationService.publishPositionChanged(patient, slot.afterPatientId);
+
+        // Notify the patient about the move once the transaction commits
+        notificationOutbox.enqueueStatusNotification(patient);
+
+        return patientService.convertToDTO(updatedPatient);
+    }
+
+    // Order key halfway between the target and its neighbour on the requested side, or null if
+    // the two keys are adjacent. Keys behind the last patient stay below the key the next
+    // patient to join will get, so later arrivals still queue up behind moved patients.
+    private Slot slotNextTo(Queue queue, Long patientId, Long targetId, boolean before) {
+        Long queueId = queue.getId();
+        Long targetKey = queueEngine.callableOrderKey(queueId, targetId);
+        if (targetKey == null) {
+            throw new IllegalArgumentException("Patient " + targetId + " is not waiting in queue " + queueId);
+        }
+
+        Long neighbourId = before
+                ? queueEngine.previousCallablePatientId(queueId, targetId, patientId)
+                : queueEngine.nextCallablePatientId(queueId, targetId, patientId);
+        Long neighbourKey = neighbourId != null ? queueEngine.callableOrderKey(queueId, neighbourId) : null;
+
+        long low;
+        long high;
+        if (before) {
+            low = neighbourKey != null ? neighbourKey : targetKey - 2 * Patient.ORDER_KEY_GAP;
+            high = targetKey;
+        } else {
+            low = targetKey;
+            high = neighbourKey != null ? neighbourKey : Patient.orderKeyFor(queue.getNextPosition());
+        }
+        if (high - low < 2) {
+            return null;
+        }
+        return new Slot(low + (high - low) / 2, before ? neighbourId : targetId);
+    }
+
+    // Spread the keys of the queue's active patients evenly again, keeping their order and
+    // staying below the key of the next patient to join. Must run with the queue row locked.
+    void renumber(Queue queue) {
+        Long queueId = queue.getId();
+        List<Patient> patients = patientRepository.findByQueueIdAndStatusInOrderByOrderKeyAscIdAsc(
+                queueId, QueueEngine.ACTIVE_STATUSES);
+        if (patients.isEmpty()) {
+            return;
+        }
+
+        long high = Patient.orderKeyFor(queue.getNextPosition());
+        long low = Math.min(patients.get(0).getOrderKey(), high - Patient.ORDER_KEY_GAP * patients.size());
+        long step = (high - low) / patients.size();
+        long key = high - step * patients.size();
+        for (Patient patient : patients) {
+            patient.setOrderKey(key);
+            queueEngine.track(queueId, patient.getId(), patient.getStatus(), key);
+            key += step;
+        }
+        patientRepository.saveAll(patients);
+        logger.info("Renumbered {} active patients of queue {}", patients.size(), queueId);
+    }
+
+    private Patient getWaitingPatient(Long id) {
+        Patient patient = patientRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
+        if (patient.getStatus() != Patient.PatientStatus.WAITING && patient.getStatus() != Patient.PatientStatus.NOTIFIED) {
+            throw new IllegalArgumentException("Only waiting patients can be moved, patient " + id + " is " + patient.getStatus());
+        }
+        return patient;
+    }
+
+    private static final class Slot {
+        private final long orderKey;
+        private final Long afterPatientId;
+
+        private Slot(long orderKey, Long afterPatientId) {
+            this.orderKey = orderKey;
+            this.afterPatientId = afterPatientId;
+        }
+    }
+}
@@ -5,70 +5,169 @@ import com.hospital.queue.dto.PatientDTO;
 import com.hospital.queue.dto.PatientStatusUpdateDTO;
 import com.hospital.queue.exception.ResourceNotFoundException;
 import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.PatientHistory;
 import com.hospital.queue.model.Queue;
+import com.hospital.queue.model.ServiceCounter;
+import com.hospital.queue.repository.PatientHistoryRepository;
 import com.hospital.queue.repository.PatientRepository;
 import com.hospital.queue.repository.QueueRepository;
+import com.hospital.queue.repository.ServiceCounterRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class PatientService {
 
     private static final Logger logger = LoggerFactory.getLogger(PatientService.class);
+    
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+    
+    // Patients that can be called to a counter, the ones already notified included, as stored in the status column
+    private static final List<String> CALLABLE_STATUSES =
+            Arrays.asList(Patient.PatientStatus.NOTIFIED.name(), Patient.PatientStatus.WAITING.name());
 
     private final PatientRepository patientRepository;
+    private final PatientHistoryRepository patientHistoryRepository;
     private final QueueRepository queueRepository;
+    private final ServiceCounterRepository counterRepository;
     private final NotificationService notificationService;
-    private final PatientDeviceService patientDeviceService;
+    private final NotificationOutboxService notificationOutbox;
+    private final QueueEngine queueEngine;
+    private final QueuePositionAllocator positionAllocator;
+    private final PatientSessionTokenService sessionTokens;
     
     public PatientService(PatientRepository patientRepository,
+                        PatientHistoryRepository patientHistoryRepository,
                         QueueRepository queueRepository,
+                        ServiceCounterRepository counterRepository,
                         NotificationService notificationService,
-                        PatientDeviceService patientDeviceService) {
+                        NotificationOutboxService notificationOutbox,
+                        QueueEngine queueEngine,
+                        QueuePositionAllocator positionAllocator,
+                        PatientSessionTokenService sessionTokens) {
         this.patientRepository = patientRepository;
+        this.patientHistoryRepository = patientHistoryRepository;
         this.queueRepository = queueRepository;
+        this.counterRepository = counterRepository;
         this.notificationService = notificationService;
-        this.patientDeviceService = patientDeviceService;
+        this.notificationOutbox = notificationOutbox;
+        this.queueEngine = queueEngine;
+        this.positionAllocator = positionAllocator;
+        this.sessionTokens = sessionTokens;
     }
 
     public List<PatientDTO> getAllPatients() {
-        return patientRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return patientRepository.findAllAsDto();
+    }
+
+    /**
+     * Get a page of patients in id order. Pass the id of the last patient of a page as
+     * afterId to get the next one.
+     * 
+     * @param afterId Only patients with a larger id are returned; null for the first page
+     * @param limit Maximum number of patients to return
+     * @param includeHistory Whether archived patients are included
+     * @return Page of patients
+     */
+    public List<PatientDTO> getPatients(Long afterId, int limit, boolean includeHistory) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        
+        long cursor = afterId != null ? afterId : 0L;
+        Pageable page = PageRequest.of(0, limit);
+        List<PatientDTO> patients = patientRepository.findPageAfterId(cursor, page);
+        if (!includeHistory) {
+            return patients;
+        }
+        
+        // Archived rows keep their ids, so one id cursor pages through both tables
+        patients.addAll(patientHistoryRepository.findPageAfterId(cursor, page));
+        patients.sort(Comparator.comparing(PatientDTO::getId));
+        return patients.size() > limit ? new ArrayList<>(patients.subList(0, limit)) : patients;
+    }
+
+    /**
+     * Hand every patient to the consumer in id order, live patients first and then the
+     * archived ones if requested. Rows are read through a database cursor, so this runs in
+     * constant memory and is meant for exports.
+     * 
+     * @param includeHistory Whether archived patients are included
+     * @param consumer Receives each patient
+     */
+    @Transactional(readOnly = true)
+    public void exportPatients(boolean includeHistory, Consumer<PatientDTO> consumer) {
+        try (Stream<PatientDTO> patients = patientRepository.streamAllAsDto()) {
+            patients.forEach(consumer);
+        }
+        if (includeHistory) {
+            try (Stream<PatientDTO> archived = patientHistoryRepository.streamAllAsDto()) {
+                archived.forEach(consumer);
+            }
+        }
     }
 
     public PatientDTO getPatientById(Long id) {
         Patient patient = patientRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
+                .orElseGet(() -> findArchivedPatient(id));
         return convertToDTO(patient);
     }
 
+    // Patients that finished long enough ago live in the history table only
+    private Patient findArchivedPatient(Long id) {
+        PatientHistory history = patientHistoryRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
+        Queue queue = queueRepository.findById(history.getQueueId())
+                .orElseGet(() -> deletedQueue(history.getQueueId()));
+        return history.toPatient(queue);
+    }
+
+    // History outlives queues, so an archived patient may point at a queue that no longer exists
+    private Queue deletedQueue(Long queueId) {
+        Queue queue = new Queue();
+        queue.setId(queueId);
+        return queue;
+    }
+
     @Transactional
     public PatientDTO registerPatient(PatientDTO patientDTO) {
         // Initialize queue to null
         Queue queue = null;
         
-        System.out.println("Patient registration request received with data: " + 
-                          "queueId=" + patientDTO.getQueueId() + 
-                          ", qrCodeId=" + patientDTO.getQrCodeId() + 
-                          ", name=" + patientDTO.getName());
+        logger.debug("Patient registration request received with data: queueId={}, qrCodeId={}, name={}",
+                patientDTO.getQueueId(), patientDTO.getQrCodeId(), patientDTO.getName());
         
         // First, try to find the queue by queue ID if provided (this is the most reliable method)
         if (patientDTO.getQueueId() != null) {
-            System.out.println("Looking up queue by ID: " + patientDTO.getQueueId());
+            logger.debug("Looking up queue by ID: {}", patientDTO.getQueueId());
             queue = queueRepository.findById(patientDTO.getQueueId())
                     .orElse(null);
             
             if (queue != null) {
-                System.out.println("Queue found by ID: " + patientDTO.getQueueId() + ", name: " + queue.getName());
+                logger.debug("Queue found by ID: {}, name: {}", patientDTO.getQueueId(), queue.getName());
             } else {
-                System.out.println("Queue not found with ID: " + patientDTO.getQueueId());
+                logger.debug("Queue not found with ID: {}", patientDTO.getQueueId());
             }
         }
         
@@ -77,9 +176,9 @@ public class PatientService {
             // Clean up the QR code ID - remove any "undefined" or empty values
             String qrCodeId = patientDTO.getQrCodeId();
             if (qrCodeId.equals("undefined") || qrCodeId.isEmpty()) {
-                System.out.println("QR code ID is undefined or empty, skipping QR code lookup");
+                logger.debug("QR code ID is undefined or empty, skipping QR code lookup");
             } else {
-                System.out.println("Looking up queue by QR code ID: " + qrCodeId);
+                logger.debug("Looking up queue by QR code ID: {}", qrCodeId);
                 
                 // Check if this is a direct queue ID reference
                 if (qrCodeId.startsWith("direct-")) {
@@ -87,16 +186,16 @@ public class PatientService {
                     if (parts.length >= 2) {
                         try {
                             Long directQueueId = Long.parseLong(parts[1]);
-                            System.out.println("Extracted direct queue ID: " + directQueueId + " from QR code: " + qrCodeId);
+                            logger.debug("Extracted direct queue ID: {} from QR code: {}", directQueueId, qrCodeId);
                             queue = queueRepository.findById(directQueueId).orElse(null);
                             
                             if (queue != null) {
-                                System.out.println("Queue found by direct ID reference: " + directQueueId + ", name: " + queue.getName());
+                                logger.debug("Queue found by direct ID reference: {}, name: {}", directQueueId, queue.getName());
                             } else {
-                                System.out.println("Queue not found with direct ID reference: " + directQueueId);
+                                logger.debug("Queue not found with direct ID reference: {}", directQueueId);
                             }
                         } catch (NumberFormatException e) {
-                            System.out.println("Failed to parse queue ID from QR code: " + qrCodeId);
+                            logger.debug("Failed to parse queue ID from QR code: {}", qrCodeId);
                         }
                     }
                 } else {
@@ -104,9 +203,9 @@ public class PatientService {
                     queue = queueRepository.findByQrCodeId(qrCodeId).orElse(null);
                     
                     if (queue != null) {
-                        System.out.println("Queue found by QR code ID: " + qrCodeId + ", name: " + queue.getName());
+                        logger.debug("Queue found by QR code ID: {}, name: {}", qrCodeId, queue.getName());
                     } else {
-                        System.out.println("Queue not found with QR code ID: " + qrCodeId);
+                        logger.debug("Queue not found with QR code ID: {}", qrCodeId);
                     }
                 }
             }
@@ -116,11 +215,11 @@ public class PatientService {
         if (queue == null) {
             String errorMessage = String.format("Queue not found with QR code: %s or queue ID: %s", 
                 patientDTO.getQrCodeId(), patientDTO.getQueueId());
-            System.err.println(errorMessage);
+            logger.warn(errorMessage);
             throw new ResourceNotFoundException(errorMessage);
         }
         
-        System.out.println("Registering patient to queue: " + queue.getName() + " (ID: " + queue.getId() + ")");
+        logger.debug("Registering patient to queue: {} (ID: {})", queue.getName(), queue.getId());
         
         Patient patient = new Patient();
         patient.setName(patientDTO.getName());
@@ -130,21 +229,137 @@ public class PatientService {
         patient.setStatus(Patient.PatientStatus.WAITING);
         
         // Get the next position in the queue
-        Integer maxPosition = patientRepository.findMaxQueuePositionByQueueId(queue.getId());
-        patient.setQueuePosition(maxPosition != null ? maxPosition + 1 : 1);
+        patient.setQueuePosition(positionAllocator.allocate(queue.getId()));
         patient.setJoinedAt(LocalDateTime.now());
         
         Patient savedPatient = patientRepository.save(patient);
+        queueEngine.track(queue.getId(), savedPatient.getId(), savedPatient.getStatus(), savedPatient.getOrderKey());
         
-        // Broadcast queue update to all clients
-        notificationService.broadcastQueueUpdate(queue.getId());
+        // Publish the new patient to queue subscribers
+        notificationService.publishPatientJoined(savedPatient);
         
-        return convertToDTO(savedPatient);
+        return toRegisteredDTO(savedPatient);
+    }
+
+    /**
+     * Register many patients in one transaction, for example pre-booked appointments imported
+     * when a clinic opens or registrations buffered by an offline kiosk. Queues are looked up
+     * with one query per kind of reference, each queue reserves its block of positions with a
+     * single update, and all patients are inserted in JDBC batches. Queue subscribers receive
+     * one update per affected queue after commit. If any queue cannot be found nobody is registered.
+     * 
+     * @param patientDTOs Patients to register, each with a queue ID or QR code ID
+     * @return The registered patients, in request order
+     */
+    @Transactional
+    public List<PatientDTO> registerPatients(List<PatientDTO> patientDTOs) {
+        Map<PatientDTO, Queue> queues = resolveQueues(patientDTOs);
+        
+        Map<Queue, List<Patient>> patientsByQueue = new TreeMap<>(Comparator.comparing(Queue::getId));
+        List<Patient> patients = new ArrayList<>(patientDTOs.size());
+        for (PatientDTO patientDTO : patientDTOs) {
+            Patient patient = new Patient();
+            patient.setName(patientDTO.getName());
+            patient.setPhoneNumber(patientDTO.getPhoneNumber());
+            patient.setEmail(patientDTO.getEmail());
+            patient.setQueue(queues.get(patientDTO));
+            patient.setStatus(Patient.PatientStatus.WAITING);
+            patient.setJoinedAt(LocalDateTime.now());
+            patientsByQueue.computeIfAbsent(patient.getQueue(), queue -> new ArrayList<>()).add(patient);
+            patients.add(patient);
+        }
+        
+        // Queues are visited in id order so concurrent bulk registrations lock their counters in the same order
+        patientsByQueue.forEach((queue, queuePatients) -> {
+            int position = positionAllocator.allocate(queue.getId(), queuePatients.size());
+            for (Patient patient : queuePatients) {
+                patient.setQueuePosition(position++);
+            }
+        });
+        
+        List<Patient> savedPatients = patientRepository.saveAll(patients);
+        for (Patient savedPatient : savedPatients) {
+            queueEngine.track(savedPatient.getQueue().getId(), savedPatient.getId(),
+                    savedPatient.getStatus(), savedPatient.getOrderKey());
+            // Buffered until commit and sent as one message per queue
+            notificationService.publishPatientJoined(savedPatient);
+        }
+        logger.info("Registered {} patients to {} queues", savedPatients.size(), patientsByQueue.size());
+        
+        return savedPatients.stream()
+                .map(this::toRegisteredDTO)
+                .collect(Collectors.toList());
+    }
+
+    // Only the patient registering gets the token that subscribes to its own notifications
+    private PatientDTO toRegisteredDTO(Patient savedPatient) {
+        PatientDTO registeredPatient = convertToDTO(savedPatient);
+        registeredPatient.setSessionToken(sessionTokens.issue(savedPatient.getId()));
+        return registeredPatient;
+    }
+
+    // Same lookup rules as registerPatient: queue ID first, then "direct-<id>" or a plain QR code ID
+    private Map<PatientDTO, Queue> resolveQueues(List<PatientDTO> patientDTOs) {
+        Set<Long> queueIds = new HashSet<>();
+        Set<String> qrCodeIds = new HashSet<>();
+        for (PatientDTO patientDTO : patientDTOs) {
+            Long queueId = queueIdReference(patientDTO);
+            if (queueId != null) {
+                queueIds.add(queueId);
+            } else if (isUsableQrCodeId(patientDTO.getQrCodeId())) {
+                qrCodeIds.add(patientDTO.getQrCodeId());
+            }
+        }
+        
+        Map<Long, Queue> queuesById = new HashMap<>();
+        Map<String, Queue> queuesByQrCodeId = new HashMap<>();
+        if (!queueIds.isEmpty()) {
+            queueRepository.findAllById(queueIds).forEach(queue -> queuesById.put(queue.getId(), queue));
+        }
+        if (!qrCodeIds.isEmpty()) {
+            queueRepository.findByQrCodeIdIn(qrCodeIds).forEach(queue -> queuesByQrCodeId.put(queue.getQrCodeId(), queue));
+        }
+        
+        Map<PatientDTO, Queue> queues = new IdentityHashMap<>();
+        for (PatientDTO patientDTO : patientDTOs) {
+            Long queueId = queueIdReference(patientDTO);
+            Queue queue = queueId != null
+                    ? queuesById.get(queueId)
+                    : queuesByQrCodeId.get(patientDTO.getQrCodeId());
+            if (queue == null) {
+                throw new ResourceNotFoundException(String.format("Queue not found with QR code: %s or queue ID: %s",
+                        patientDTO.getQrCodeId(), patientDTO.getQueueId()));
+            }
+            queues.put(patientDTO, queue);
+        }
+        return queues;
+    }
+
+    private Long queueIdReference(PatientDTO patientDTO) {
+        if (patientDTO.getQueueId() != null) {
+            return patientDTO.getQueueId();
+        }
+        String qrCodeId = patientDTO.getQrCodeId();
+        if (isUsableQrCodeId(qrCodeId) && qrCodeId.startsWith("direct-")) {
+            String[] parts = qrCodeId.split("-");
+            if (parts.length >= 2) {
+                try {
+                    return Long.parseLong(parts[1]);
+                } catch (NumberFormatException e) {
+                    logger.warn("Failed to parse queue ID from QR code: {}", qrCodeId);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isUsableQrCodeId(String qrCodeId) {
+        return qrCodeId != null && !qrCodeId.isEmpty() && !qrCodeId.equals("undefined");
     }
 
     @Transactional
     public PatientDTO updatePatientStatus(Long id, PatientStatusUpdateDTO statusUpdateDTO) {
-        System.out.println("Updating patient " + id + " status to " + statusUpdateDTO.getStatus());
+        logger.debug("Updating patient {} status to {}", id, statusUpdateDTO.getStatus());
         
         Patient patient = patientRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
@@ -153,49 +368,62 @@ public class PatientService {
         // Store new status
         Patient.PatientStatus newStatus = statusUpdateDTO.getStatus();
         
-        // If changing to SERVING status, ensure no other patient is currently being served
+        // All rows touched by this transition are written in a single batch at the end
+        List<Patient> changedPatients = new ArrayList<>();
+        
+        // If changing to SERVING status, ensure no other patient is currently being served at the same counter
         if (newStatus == Patient.PatientStatus.SERVING) {
-            // Find any other patients in SERVING status in this queue
-            List<Patient> servingPatients = patientRepository.findByQueueIdAndStatusOrderByQueuePosition(
-                    queueId, Patient.PatientStatus.SERVING);
+            if (statusUpdateDTO.getCounterId() != null) {
+                patient.setCounter(lockCounter(queueId, statusUpdateDTO.getCounterId()));
+            }
+            Long counterId = counterId(patient);
+            if (counterId == null) {
+                // Same lock as callNextPatient, so a single desk is never given two patients at once
+                lockQueue(queueId);
+            } else if (statusUpdateDTO.getCounterId() == null) {
+                // Serving again at the counter the patient was at takes the same lock as a new counter
+                lockCounter(queueId, counterId);
+            }
+            
+            // Find the other patients being served at this counter, read from the database under the
+            // lock above. Without counters every patient has a null counter, so the queue keeps a single desk.
+            List<Patient> servingPatients = counterId != null
+                    ? patientRepository.findByCounterIdAndStatus(counterId, Patient.PatientStatus.SERVING)
+                    : patientRepository.findByQueueIdAndStatusAndCounterIsNull(queueId, Patient.PatientStatus.SERVING);
             
-            // If there are other patients being served, change their status to WAITING
+            // Change their status to WAITING
             for (Patient servingPatient : servingPatients) {
-                if (!servingPatient.getId().equals(id)) {
-                    System.out.println("Changing patient " + servingPatient.getId() + " from SERVING to WAITING");
-                    servingPatient.setStatus(Patient.PatientStatus.WAITING);
-                    patientRepository.save(servingPatient);
+                if (servingPatient.getId().equals(id)) {
+                    continue;
                 }
+                logger.debug("Changing patient {} from SERVING to WAITING", servingPatient.getId());
+                servingPatient.setStatus(Patient.PatientStatus.WAITING);
+                servingPatient.setCounter(null);
+                queueEngine.track(queueId, servingPatient.getId(), servingPatient.getStatus(), servingPatient.getOrderKey());
+                notificationService.publishStatusChanged(servingPatient, Patient.PatientStatus.SERVING);
+                changedPatients.add(servingPatient);
             }
         }
         
         // Update the patient's status
+        Patient.PatientStatus previousStatus = patient.getStatus();
         patient.setStatus(newStatus);
+        // Served and cancelled patients keep the counter they were at; waiting ones are at none yet
+        if (newStatus == Patient.PatientStatus.WAITING || newStatus == Patient.PatientStatus.NOTIFIED) {
+            patient.setCounter(null);
+        }
+        queueEngine.track(queueId, patient.getId(), newStatus, patient.getOrderKey());
+        changedPatients.add(patient);
         
         // Handle specific status transitions
         if (newStatus == Patient.PatientStatus.NOTIFIED) {
             patient.setNotifiedAt(LocalDateTime.now());
             
-            // Send WebSocket notification
-            notificationService.sendNotification(patient);
-            
-            // Send Firebase push notification to the patient
-            try {
-                boolean notificationSent = patientDeviceService.sendStatusNotification(
-                    patient.getId(), 
-                    patient.getStatus().toString()
-                );
-                if (notificationSent) {
-                    logger.info("Firebase notification sent to notified patient: {}", patient.getId());
-                } else {
-                    logger.warn("Failed to send Firebase notification to patient: {}", patient.getId());
-                }
-            } catch (Exception e) {
-                logger.error("Error sending Firebase notification to patient: {}", e.getMessage(), e);
-            }
+            // WebSocket and Firebase notifications are sent by the outbox dispatcher after commit
+            notificationOutbox.enqueueStatusNotification(patient);
         } else if (newStatus == Patient.PatientStatus.SERVING) {
             // If a patient is now being served, notify the next patients in line
-            notifyUpcomingPatients(queueId);
+            changedPatients.addAll(notifyUpcomingPatients(queueId));
         } else if (newStatus == Patient.PatientStatus.SERVED) {
             patient.setServedAt(LocalDateTime.now());
             
@@ -203,116 +431,138 @@ public class PatientService {
             // This allows the admin to have full control over the queue
         }
         
-        Patient updatedPatient = patientRepository.save(patient);
+        patientRepository.saveAll(changedPatients);
         
-        // Broadcast queue update to all clients
-        notificationService.broadcastQueueUpdate(queueId);
+        // Publish the transition to queue subscribers
+        notificationService.publishStatusChanged(patient, previousStatus);
         
-        return convertToDTO(updatedPatient);
+        return convertToDTO(patient);
     }
 
-    private void notifyUpcomingPatients(Long queueId) {
-        List<Patient> waitingPatients = patientRepository.findByQueueIdAndStatusOrderByQueuePosition(
-                queueId, Patient.PatientStatus.WAITING);
-        
-        // Notify the next 2 patients in line
-        for (int i = 0; i < Math.min(2, waitingPatients.size()); i++) {
-            Patient patient = waitingPatients.get(i);
+    // Returns the patients that were changed so the caller can persist them in one batch
+    private List<Patient> notifyUpcomingPatients(Long queueId) {
+        // Notify the next 2 patients in line. They are read from the database rather than the engine,
+        // so a patient another instance has just served or cancelled is never notified again
+        List<Patient> upcomingPatients = patientRepository.lockNextWaitingByQueueId(queueId, 2);
+        for (Patient patient : upcomingPatients) {
             patient.setStatus(Patient.PatientStatus.NOTIFIED);
             patient.setNotifiedAt(LocalDateTime.now());
-            patientRepository.save(patient);
-            
-            // Send WebSocket notification
-            notificationService.sendNotification(patient);
+            queueEngine.track(queueId, patient.getId(), patient.getStatus(), patient.getOrderKey());
+            notificationService.publishStatusChanged(patient, Patient.PatientStatus.WAITING);
             
-            // Send Firebase push notification
-            try {
-                patientDeviceService.sendStatusNotification(patient.getId(), patient.getStatus().toString());
-                logger.info("Firebase notification sent to upcoming patient: {}", patient.getId());
-            } catch (Exception e) {
-                logger.error("Error sending Firebase notification to upcoming patient: {}", e.getMessage(), e);
-            }
+            // WebSocket and Firebase notifications are sent by the outbox dispatcher after commit
+            notificationOutbox.enqueueStatusNotification(patient);
         }
         
-        // Broadcast queue update to all clients
-        notificationService.broadcastQueueUpdate(queueId);
+        return upcomingPatients;
     }
 
     // Call next patient in queue - can be called manually by admin
+    @Transactional
     public PatientDTO callNextPatient(Long queueId) {
-        // Check if there's already a patient being served
-        List<Patient> servingPatients = patientRepository.findByQueueIdAndStatusOrderByQueuePosition(
-                queueId, Patient.PatientStatus.SERVING);
-        
-        // Only move to the next patient if no one is currently being served
-        if (servingPatients.isEmpty()) {
-            List<Patient> waitingPatients = patientRepository.findByQueueIdAndStatusOrderByQueuePosition(
-                    queueId, Patient.PatientStatus.WAITING);
-            
-            if (!waitingPatients.isEmpty()) {
-                Patient nextPatient = waitingPatients.get(0);
-                logger.info("Moving next patient {} to SERVING status", nextPatient.getId());
-                nextPatient.setStatus(Patient.PatientStatus.SERVING);
-                patientRepository.save(nextPatient);
-                
-                // Send WebSocket notification to the patient being served
-                notificationService.sendNotification(nextPatient);
-                
-                // Send Firebase push notification
-                try {
-                    patientDeviceService.sendStatusNotification(nextPatient.getId(), nextPatient.getStatus().toString());
-                    logger.info("Firebase notification sent to next patient: {}", nextPatient.getId());
-                } catch (Exception e) {
-                    logger.error("Error sending Firebase notification to next patient: {}", e.getMessage(), e);
-                }
-                
-                // Notify upcoming patients
-                notifyUpcomingPatients(queueId);
-                
-                return convertToDTO(nextPatient);
-            }
-        } else {
-            logger.info("Not moving to next patient because there's already a patient being served");
+        // The queue row lock serializes single-desk dispatch across application instances, and the
+        // database rather than this instance's engine decides whether someone is being served
+        lockQueue(queueId);
+        if (patientRepository.existsByQueueIdAndStatusAndCounterIsNull(queueId, Patient.PatientStatus.SERVING)) {
+            logger.info("Not moving to next patient in queue {}: a patient is being served", queueId);
+            return null;
         }
         
-        return null;
+        Patient nextPatient = lockClaimedPatient(queueId, queueEngine.claimNext(queueId));
+        if (nextPatient == null) {
+            logger.info("Not moving to next patient in queue {}: nobody is waiting", queueId);
+            return null;
+        }
+        
+        return serveClaimedPatient(queueId, nextPatient, null);
     }
 
+    /**
+     * Call the next patient of a queue to one of its counters. Each counter serves one patient
+     * at a time, but different counters of the same queue are dispatched concurrently, each
+     * patient to exactly one counter.
+     * 
+     * @return The patient now being served at the counter, or null if the counter is still
+     *         serving someone or nobody is waiting
+     */
     @Transactional
-    public PatientDTO updatePatientQueuePosition(Long id, Integer newPosition) {
-        Patient patient = patientRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
-        
-        // Store old position for logging purposes
-        Integer oldPosition = patient.getQueuePosition();
-        
-        // Update the patient's queue position
-        patient.setQueuePosition(newPosition);
+    public PatientDTO callNextPatient(Long queueId, Long counterId) {
+        ServiceCounter counter = lockCounter(queueId, counterId);
+        if (!counter.isOpen()) {
+            throw new IllegalArgumentException("Counter " + counterId + " is closed");
+        }
+        if (patientRepository.existsByCounterIdAndStatus(counterId, Patient.PatientStatus.SERVING)) {
+            logger.info("Not moving to next patient at counter {}: a patient is being served", counterId);
+            return null;
+        }
         
-        // Log position change
-        logger.info("Patient queue position changed: {} from {} to {}", 
-                   patient.getName(), oldPosition, newPosition);
+        Patient nextPatient = lockClaimedPatient(queueId, queueEngine.claimNextForCounter(queueId));
+        if (nextPatient == null) {
+            logger.info("Not moving to next patient at counter {}: nobody is waiting in queue {}", counterId, queueId);
+            return null;
+        }
         
-        Patient updatedPatient = patientRepository.save(patient);
+        return serveClaimedPatient(queueId, nextPatient, counter);
+    }
+
+    // Counter is null for queues served at a single desk
+    private PatientDTO serveClaimedPatient(Long queueId, Patient nextPatient, ServiceCounter counter) {
+        logger.info("Moving next patient {} to SERVING status", nextPatient.getId());
+        Patient.PatientStatus previousStatus = nextPatient.getStatus();
+        nextPatient.setStatus(Patient.PatientStatus.SERVING);
+        nextPatient.setCounter(counter);
+        queueEngine.track(queueId, nextPatient.getId(), nextPatient.getStatus(), nextPatient.getOrderKey());
+        notificationService.publishStatusChanged(nextPatient, previousStatus);
         
-        // Broadcast queue update to all clients via WebSocket
-        notificationService.broadcastQueueUpdate(patient.getQueue().getId());
+        // Notify the patient being served once the transaction commits
+        notificationOutbox.enqueueStatusNotification(nextPatient);
         
-        // Send notification to the patient about position change via WebSocket
-        notificationService.sendNotification(patient);
+        // Notify upcoming patients and persist every change in one batch
+        List<Patient> changedPatients = new ArrayList<>(notifyUpcomingPatients(queueId));
+        changedPatients.add(nextPatient);
+        patientRepository.saveAll(changedPatients);
         
-        // Send push notification via Firebase Cloud Messaging
-        try {
-            patientDeviceService.sendStatusNotification(patient.getId(), patient.getStatus().toString());
-            logger.info("Firebase notification sent for position change to patient: {}", patient.getId());
-        } catch (Exception e) {
-            logger.error("Error sending Firebase notification for position change: {}", e.getMessage(), e);
+        return convertToDTO(nextPatient);
+    }
+
+    // Confirm an in-memory claim against the database. The row lock is held until commit, so a patient
+    // is dispatched exactly once even when several application instances call next on the same queue.
+    // If the engine had nobody to claim, or the claimed row is locked or no longer waiting, the engine
+    // may be cold or behind another instance: reload it and take the first waiting row nobody else has locked.
+    private Patient lockClaimedPatient(Long queueId, Long claimedId) {
+        if (claimedId != null) {
+            Optional<Patient> claimed = patientRepository.lockByIdAndStatusIn(claimedId, CALLABLE_STATUSES);
+            if (claimed.isPresent()) {
+                return claimed.get();
+            }
+            logger.info("Patient {} was dispatched elsewhere, picking the next unlocked patient in queue {}", claimedId, queueId);
         }
         
-        return convertToDTO(updatedPatient);
+        Optional<Patient> next = patientRepository.lockFirstByQueueIdAndStatusIn(queueId, CALLABLE_STATUSES);
+        if (claimedId != null || next.isPresent()) {
+            queueEngine.evict(queueId);
+        }
+        return next.orElse(null);
     }
-    
-    private PatientDTO convertToDTO(Patient patient) {
+
+    private Queue lockQueue(Long queueId) {
+        return queueRepository.lockById(queueId)
+                .orElseThrow(() -> new ResourceNotFoundException("Queue not found with id: " + queueId));
+    }
+
+    // Locking the counter row serializes dispatch to that counter against manual status changes
+    private ServiceCounter lockCounter(Long queueId, Long counterId) {
+        return counterRepository.lockByIdAndQueueId(counterId, queueId)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Counter not found with id: " + counterId + " in queue: " + queueId));
+    }
+
+    private static Long counterId(Patient patient) {
+        return patient.getCounter() != null ? patient.getCounter().getId() : null;
+    }
+
+    // Package-private so the DTO conversion benchmark can call it directly
+    PatientDTO convertToDTO(Patient patient) {
         PatientDTO dto = new PatientDTO();
         dto.setId(patient.getId());
         dto.setName(patient.getName());
@@ -326,6 +576,10 @@ public class PatientService {
         dto.setJoinedAt(patient.getJoinedAt());
         dto.setServedAt(patient.getServedAt());
         dto.setNotifiedAt(patient.getNotifiedAt());
+        if (patient.getCounter() != null) {
+            dto.setCounterId(patient.getCounter().getId());
+            dto.setCounterName(patient.getCounter().getName());
+        }
         return dto;
     }
 }
@@ -0,0 +1,127 @@
+package com.hospital.queue.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Session tokens handed to patients when they join a queue. A patient's phone presents
+ * its token when opening the WebSocket connection and then receives the messages
+ * addressed to that patient.
+ *
+ * Tokens are {@code <patientId>.<expiry>.<signature>}, signed with HMAC-SHA256, so any
+ * node can check them without a database lookup. All nodes need the same
+ * {@code app.websocket.patient-token.secret}. A single node may run without one and then
+ * uses a random key, so tokens stop working when it restarts; with the broker relay or
+ * the postgres backplane, which both mean several nodes, startup fails instead.
+ */
+@Service
+public class PatientSessionTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientSessionTokenService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final Duration timeToLive;
+    private final Clock clock;
+
+    @Autowired
+    public PatientSessionTokenService(@Value("${app.websocket.patient-token.secret:}") String secret,
+                                      @Value("${app.websocket.patient-token.ttl-hours:24}") long ttlHours,
+                                      @Value("${app.websocket.broker:simple}") String brokerMode,
+                                      @Value("${app.websocket.backplane:local}") String backplaneMode) {
+        this(requireSharedSecret(secret, brokerMode, backplaneMode), Duration.ofHours(ttlHours), Clock.systemUTC());
+    }
+
+    PatientSessionTokenService(String secret, Duration timeToLive, Clock clock) {
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            logger.warn("No app.websocket.patient-token.secret configured, patient session tokens are only valid on this node");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+    }
+
+    /**
+     * Issue a token for the patient.
+     */
+    public String issue(Long patientId) {
+        long expiresAt = clock.instant().plus(timeToLive).getEpochSecond();
+        String claims = patientId + "." + expiresAt;
+        return claims + "." + sign(claims);
+    }
+
+    /**
+     * Check a token.
+     *
+     * @return The patient the token was issued to, or null if it is malformed, forged or expired
+     */
+    public Long verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0) {
+            return null;
+        }
+
+        String claims = token.substring(0, signatureStart);
+        byte[] expected = sign(claims).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(signatureStart + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+
+        String[] parts = claims.split("\\.");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            long expiresAt = Long.parseLong(parts[1]);
+            if (clock.instant().getEpochSecond() >= expiresAt) {
+                return null;
+            }
+            return Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // A random key per node would make every token issued by one node useless on the others
+    private static String requireSharedSecret(String secret, String brokerMode, String backplaneMode) {
+        boolean clustered = "relay".equalsIgnoreCase(brokerMode) || "postgres".equalsIgnoreCase(backplaneMode);
+        if (clustered && (secret == null || secret.isEmpty())) {
+            throw new IllegalStateException("app.websocket.patient-token.secret (PATIENT_TOKEN_SECRET) must be set "
+                    + "when app.websocket.broker is relay or app.websocket.backplane is postgres");
+        }
+        return secret;
+    }
+
+    private String sign(String claims) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal(claims.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign patient session token", e);
+        }
+    }
+}
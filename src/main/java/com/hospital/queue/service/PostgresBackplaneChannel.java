@@ -0,0 +1,155 @@
+package com.hospital.queue.service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link BackplaneChannel} on Postgres LISTEN/NOTIFY, so the nodes need nothing but the
+ * database they already share.
+ *
+ * Notifications are sent over a pooled connection, all payloads of a batch in one
+ * statement. Listening needs a connection of its own for as long as the node runs, so it
+ * is opened outside the pool; when it drops, the listener reconnects with exponential
+ * backoff.
+ */
+@Service
+@ConditionalOnProperty(name = "app.websocket.backplane", havingValue = "postgres")
+public class PostgresBackplaneChannel implements BackplaneChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresBackplaneChannel.class);
+
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long HEALTH_CHECK_INTERVAL_MILLIS = 10000;
+    private static final long INITIAL_RECONNECT_DELAY_MILLIS = 500;
+
+    private final DataSource dataSource;
+    private final DataSourceProperties dataSourceProperties;
+    private final String channel;
+    private final long maxReconnectDelayMillis;
+
+    private volatile boolean running;
+    private volatile Connection listenerConnection;
+    private Thread listener;
+
+    public PostgresBackplaneChannel(DataSource dataSource,
+                                    DataSourceProperties dataSourceProperties,
+                                    @Value("${app.backplane.channel:queue_events}") String channel,
+                                    @Value("${app.backplane.reconnect-max-ms:30000}") long maxReconnectDelayMillis) {
+        // LISTEN takes an identifier, not a bind parameter
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid backplane channel name: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.dataSourceProperties = dataSourceProperties;
+        this.channel = channel;
+        this.maxReconnectDelayMillis = maxReconnectDelayMillis;
+    }
+
+    @Override
+    public void send(List<String> payloads) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT pg_notify(?, payload) FROM unnest(?) AS payload")) {
+            statement.setString(1, channel);
+            statement.setArray(2, connection.createArrayOf("text", payloads.toArray()));
+            try (ResultSet ignored = statement.executeQuery()) {
+                // Notified in array order; delivered together when the statement commits
+            }
+        }
+    }
+
+    @Override
+    public void listen(Consumer<String> receiver) {
+        running = true;
+        listener = new Thread(() -> run(receiver), "backplane-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+        closeQuietly(listenerConnection);
+    }
+
+    private void run(Consumer<String> receiver) {
+        long reconnectDelay = INITIAL_RECONNECT_DELAY_MILLIS;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                listenerConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                logger.info("Listening for backplane notifications on channel {}", channel);
+                reconnectDelay = INITIAL_RECONNECT_DELAY_MILLIS;
+
+                receive(connection, receiver);
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Backplane listener connection failed, reconnecting in {} ms: {}", reconnectDelay, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, maxReconnectDelayMillis);
+            } finally {
+                listenerConnection = null;
+            }
+        }
+    }
+
+    private void receive(Connection connection, Consumer<String> receiver) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastHealthCheck = System.currentTimeMillis();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+            if (notifications != null && notifications.length > 0) {
+                for (PGNotification notification : notifications) {
+                    receiver.accept(notification.getParameter());
+                }
+                lastHealthCheck = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - lastHealthCheck > HEALTH_CHECK_INTERVAL_MILLIS) {
+                // A quiet channel and a silently dropped connection look the same until something is sent
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+                lastHealthCheck = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Closing backplane listener connection failed: {}", e.getMessage());
+        }
+    }
+}
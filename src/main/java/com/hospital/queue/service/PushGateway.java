@@ -0,0 +1,26 @@
+package com.hospital.queue.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.firebase.messaging.Message;
+
+import java.util.List;
+
+/**
+ * Transport used by {@link PushNotificationDispatcher} to hand batches of messages to FCM.
+ * Abstracted so the delivery pipeline can be exercised against a local fake.
+ */
+public interface PushGateway {
+
+    /**
+     * Send a batch of messages without blocking.
+     *
+     * @param messages Messages to send, at most {@link #MAX_BATCH_SIZE}
+     * @return Future completing with one result per message, in the same order
+     */
+    ApiFuture<List<PushResult>> sendAll(List<Message> messages);
+
+    /**
+     * Maximum number of messages FCM accepts in one batch request.
+     */
+    int MAX_BATCH_SIZE = 500;
+}
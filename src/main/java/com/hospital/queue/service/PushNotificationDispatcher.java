@@ -0,0 +1,189 @@
+package com.hospital.queue.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.messaging.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Asynchronous delivery pipeline for push notifications.
+ *
+ * Callers only enqueue messages into a bounded queue and return immediately. A single
+ * worker drains the queue into batches of up to the FCM batch limit and sends them
+ * without blocking; results are handled per token in the future callbacks. The number
+ * of batches in flight is capped, so when FCM slows down the queue fills up and new
+ * messages are rejected instead of piling up unbounded in memory.
+ */
+@Service
+public class PushNotificationDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushNotificationDispatcher.class);
+
+    private final PushGateway pushGateway;
+    private final DeviceTokenPruner deviceTokenPruner;
+    private final BlockingQueue<PushDelivery> queue;
+    private final int batchSize;
+    private final Semaphore inFlightBatches;
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Counter deliveredCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public PushNotificationDispatcher(PushGateway pushGateway,
+                                      DeviceTokenPruner deviceTokenPruner,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.push.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${app.push.batch-size:500}") int batchSize,
+                                      @Value("${app.push.max-in-flight-batches:4}") int maxInFlightBatches) {
+        this.pushGateway = pushGateway;
+        this.deviceTokenPruner = deviceTokenPruner;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.min(batchSize, PushGateway.MAX_BATCH_SIZE);
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+        this.acceptedCounter = meterRegistry.counter("push.deliveries.accepted");
+        this.rejectedCounter = meterRegistry.counter("push.deliveries.rejected");
+        this.deliveredCounter = meterRegistry.counter("push.deliveries.delivered");
+        this.failedCounter = meterRegistry.counter("push.deliveries.failed");
+        meterRegistry.gauge("push.queue.size", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "push-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Enqueue a message for delivery. Never blocks.
+     *
+     * @param patientId Patient the token belongs to
+     * @param token Device token the message is addressed to
+     * @param message Message to send
+     * @return false if the pipeline is saturated and the message was dropped
+     */
+    public boolean submit(Long patientId, String token, Message message) {
+        if (queue.offer(new PushDelivery(patientId, token, message))) {
+            acceptedCounter.increment();
+            return true;
+        }
+        rejectedCounter.increment();
+        logger.warn("Push queue is full, dropping notification for patient {}", patientId);
+        return false;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // Wait for a free slot first so the queue keeps filling and the next batch is larger
+                inFlightBatches.acquire();
+                List<PushDelivery> batch = new ArrayList<>(batchSize);
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, batchSize - 1);
+                } catch (InterruptedException e) {
+                    inFlightBatches.release();
+                    throw e;
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Unexpected error in push dispatcher: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void send(List<PushDelivery> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PushDelivery delivery : batch) {
+            messages.add(delivery.message);
+        }
+
+        ApiFuture<List<PushResult>> future;
+        try {
+            future = pushGateway.sendAll(messages);
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            failedCounter.increment(batch.size());
+            logger.error("Failed to send batch of {} push notifications: {}", batch.size(), e.getMessage());
+            return;
+        }
+
+        ApiFutures.addCallback(future, new ApiFutureCallback<List<PushResult>>() {
+            @Override
+            public void onFailure(Throwable t) {
+                inFlightBatches.release();
+                failedCounter.increment(batch.size());
+                logger.error("Batch of {} push notifications failed: {}", batch.size(), t.getMessage());
+            }
+
+            @Override
+            public void onSuccess(List<PushResult> results) {
+                inFlightBatches.release();
+                handleResults(batch, results);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void handleResults(List<PushDelivery> batch, List<PushResult> results) {
+        int delivered = 0;
+        for (int i = 0; i < batch.size() && i < results.size(); i++) {
+            PushDelivery delivery = batch.get(i);
+            PushResult result = results.get(i);
+            if (result.isSuccessful()) {
+                delivered++;
+            } else {
+                failedCounter.increment();
+                logger.warn("Failed to send push to patient {} token {}: {} ({})",
+                        delivery.patientId, delivery.token, result.getErrorCode(), result.getErrorMessage());
+                if (DeviceTokenPruner.isPermanentFailure(result.getErrorCode())) {
+                    deviceTokenPruner.markForPruning(delivery.patientId, delivery.token);
+                }
+            }
+        }
+        deliveredCounter.increment(delivered);
+        logger.info("Push batch completed. Success: {}, Failure: {}", delivered, batch.size() - delivered);
+    }
+
+    private static final class PushDelivery {
+        private final Long patientId;
+        private final String token;
+        private final Message message;
+
+        private PushDelivery(Long patientId, String token, Message message) {
+            this.patientId = patientId;
+            this.token = token;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.hospital.queue.service;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+
+/**
+ * Outcome of delivering a single push message.
+ */
+public class PushResult {
+
+    private final String messageId;
+    private final MessagingErrorCode errorCode;
+    private final String errorMessage;
+
+    private PushResult(String messageId, MessagingErrorCode errorCode, String errorMessage) {
+        this.messageId = messageId;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    public static PushResult success(String messageId) {
+        return new PushResult(messageId, null, null);
+    }
+
+    public static PushResult failure(MessagingErrorCode errorCode, String errorMessage) {
+        return new PushResult(null, errorCode, errorMessage);
+    }
+
+    public boolean isSuccessful() {
+        return messageId != null;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public MessagingErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
@@ -7,31 +7,101 @@ import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 public class QRCodeService {
 
+    public static final int MIN_SIZE = 50;
+    public static final int MAX_SIZE = 1000;
+
     @Value("${app.frontend.url:http://localhost:3000}")
     private String frontendUrl;
 
+    // Rendered images keyed by (qrCodeId, width, height); a QR code never changes once created
+    private final Map<String, QRCodeImage> imageCache;
+
+    public QRCodeService(@Value("${app.qrcode.cache-size:256}") int cacheSize) {
+        this.imageCache = Collections.synchronizedMap(new LinkedHashMap<String, QRCodeImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QRCodeImage> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
     public String generateQRCodeId() {
         return UUID.randomUUID().toString();
     }
 
     public String generateQRCodeImage(String qrCodeId, int width, int height) throws WriterException, IOException {
+        return Base64.getEncoder().encodeToString(getQRCodeImage(qrCodeId, width, height).getPng());
+    }
+
+    /**
+     * Get the rendered PNG for a QR code, encoding it only on the first request.
+     *
+     * @param qrCodeId QR code ID
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @return The cached image; the returned bytes are shared and must not be modified
+     */
+    public QRCodeImage getQRCodeImage(String qrCodeId, int width, int height) throws WriterException, IOException {
+        if (width < MIN_SIZE || width > MAX_SIZE || height < MIN_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "QR code size must be between %d and %d pixels", MIN_SIZE, MAX_SIZE));
+        }
+
+        String key = qrCodeId + ":" + width + "x" + height;
+        QRCodeImage cached = imageCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Two concurrent misses may both encode; the result is identical so the last write wins
+        QRCodeImage image = renderQRCode(qrCodeId, width, height);
+        imageCache.put(key, image);
+        return image;
+    }
+
+    private QRCodeImage renderQRCode(String qrCodeId, int width, int height) throws WriterException, IOException {
         String qrContent = frontendUrl + "/join-queue/" + qrCodeId;
         QRCodeWriter qrCodeWriter = new QRCodeWriter();
         BitMatrix bitMatrix = qrCodeWriter.encode(qrContent, BarcodeFormat.QR_CODE, width, height);
-        
+
         ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
         MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
         byte[] pngData = pngOutputStream.toByteArray();
-        
-        return Base64.getEncoder().encodeToString(pngData);
+
+        return new QRCodeImage(pngData, "\"" + DigestUtils.md5DigestAsHex(pngData) + "\"");
+    }
+
+    /**
+     * A rendered QR code PNG together with its strong ETag.
+     */
+    public static class QRCodeImage {
+        private final byte[] png;
+        private final String eTag;
+
+        public QRCodeImage(byte[] png, String eTag) {
+            this.png = png;
+            this.eTag = eTag;
+        }
+
+        public byte[] getPng() {
+            return png;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
     }
 }
@@ -0,0 +1,434 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.CacheInvalidationDTO;
+import com.hospital.queue.model.Patient.PatientStatus;
+import com.hospital.queue.repository.ActivePatientProjection;
+import com.hospital.queue.repository.PatientRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory, authoritative view of the active part of every queue.
+ *
+ * WAITING, NOTIFIED and SERVING patients are kept per queue in structures ordered by
+ * order key, so hot transitions such as "call next" are O(log n) lookups instead
+ * of re-reading whole patient lists from the database. The repositories are only used
+ * to warm the engine up at startup and to lazily load a queue the first time it is
+ * touched; the actual row changes are still persisted by the callers through JPA.
+ *
+ * Every node has an engine of its own. Once a transaction that changed a queue commits,
+ * the other nodes are told through the {@link MessageBackplane} to drop their copy and
+ * reload it on next access.
+ */
+@Service
+public class QueueEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueEngine.class);
+
+    public static final List<PatientStatus> ACTIVE_STATUSES =
+            Collections.unmodifiableList(Arrays.asList(PatientStatus.WAITING, PatientStatus.NOTIFIED, PatientStatus.SERVING));
+
+    // Patients still to be called, whose relative order can be changed
+    private static final List<PatientStatus> CALLABLE_STATUSES =
+            Collections.unmodifiableList(Arrays.asList(PatientStatus.NOTIFIED, PatientStatus.WAITING));
+
+    private final PatientRepository patientRepository;
+    private final MessageBackplane backplane;
+    private final Map<Long, QueueState> queues = new ConcurrentHashMap<>();
+
+    public QueueEngine(PatientRepository patientRepository, MessageBackplane backplane) {
+        this.patientRepository = patientRepository;
+        this.backplane = backplane;
+    }
+
+    /**
+     * Load all active patients into memory once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<ActivePatientProjection> activePatients = patientRepository.findActiveByStatusIn(ACTIVE_STATUSES);
+            Map<Long, List<ActivePatientProjection>> byQueue = activePatients.stream()
+                    .collect(Collectors.groupingBy(ActivePatientProjection::getQueueId));
+            byQueue.forEach((queueId, patients) -> queues.put(queueId, QueueState.of(patients)));
+            logger.info("Queue engine warmed up with {} active patients across {} queues",
+                    activePatients.size(), byQueue.size());
+        } catch (Exception e) {
+            // Queues will be loaded lazily on first access instead
+            logger.warn("Queue engine warm-up failed, falling back to lazy loading: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Record the current status and order key of a patient.
+     * Patients that are no longer active (SERVED, CANCELLED) are dropped from the engine.
+     */
+    public void track(Long queueId, Long patientId, PatientStatus status, Long orderKey) {
+        QueueState state = state(queueId);
+        synchronized (state) {
+            state.remove(patientId);
+            if (ACTIVE_STATUSES.contains(status)) {
+                state.add(new Entry(patientId, status, orderKey));
+            }
+        }
+        recordChange(queueId);
+    }
+
+    /**
+     * Remove a patient from the engine.
+     */
+    public void remove(Long queueId, Long patientId) {
+        QueueState state = state(queueId);
+        synchronized (state) {
+            state.remove(patientId);
+        }
+        recordChange(queueId);
+    }
+
+    /**
+     * Ids of the patients currently being served, in queue order.
+     */
+    public List<Long> servingPatientIds(Long queueId) {
+        return patientIds(queueId, PatientStatus.SERVING, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Ids of the first {@code limit} WAITING patients, in queue order.
+     */
+    public List<Long> waitingPatientIds(Long queueId, int limit) {
+        return patientIds(queueId, PatientStatus.WAITING, limit);
+    }
+
+    /**
+     * Ids of the first {@code limit} NOTIFIED or WAITING patients, in the order they will be called.
+     */
+    public List<Long> callablePatientIds(Long queueId, int limit) {
+        QueueState state = state(queueId);
+        synchronized (state) {
+            List<Long> ids = new ArrayList<>();
+            Iterator<Entry> notified = state.byStatus.get(PatientStatus.NOTIFIED).iterator();
+            Iterator<Entry> waiting = state.byStatus.get(PatientStatus.WAITING).iterator();
+            Entry nextNotified = notified.hasNext() ? notified.next() : null;
+            Entry nextWaiting = waiting.hasNext() ? waiting.next() : null;
+            while (ids.size() < limit && (nextNotified != null || nextWaiting != null)) {
+                if (nextWaiting == null || (nextNotified != null && BY_ORDER.compare(nextNotified, nextWaiting) <= 0)) {
+                    ids.add(nextNotified.patientId);
+                    nextNotified = notified.hasNext() ? notified.next() : null;
+                } else {
+                    ids.add(nextWaiting.patientId);
+                    nextWaiting = waiting.hasNext() ? waiting.next() : null;
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Order key of a NOTIFIED or WAITING patient, or null if the patient is not one in this queue.
+     */
+    public Long callableOrderKey(Long queueId, Long patientId) {
+        QueueState state = state(queueId);
+        synchronized (state) {
+            Entry entry = state.byPatientId.get(patientId);
+            return entry != null && CALLABLE_STATUSES.contains(entry.status) ? entry.orderKey : null;
+        }
+    }
+
+    /**
+     * The NOTIFIED or WAITING patient directly ahead of the given one, ignoring {@code skipPatientId}.
+     *
+     * @return The patient's id, or null if the given patient is the first one
+     */
+    public Long previousCallablePatientId(Long queueId, Long patientId, Long skipPatientId) {
+        return neighbour(queueId, patientId, skipPatientId, true);
+    }
+
+    /**
+     * The NOTIFIED or WAITING patient directly behind the given one, ignoring {@code skipPatientId}.
+     *
+     * @return The patient's id, or null if the given patient is the last one
+     */
+    public Long nextCallablePatientId(Long queueId, Long patientId, Long skipPatientId) {
+        return neighbour(queueId, patientId, skipPatientId, false);
+    }
+
+    /**
+     * Queues in which two consecutive NOTIFIED or WAITING patients have order keys less than
+     * {@code minGap} apart, so that there is little room left to move patients between them.
+     */
+    public List<Long> crowdedQueueIds(long minGap) {
+        List<Long> crowded = new ArrayList<>();
+        for (Map.Entry<Long, QueueState> queue : queues.entrySet()) {
+            QueueState state = queue.getValue();
+            synchronized (state) {
+                List<Long> keys = new ArrayList<>();
+                for (PatientStatus status : CALLABLE_STATUSES) {
+                    for (Entry entry : state.byStatus.get(status)) {
+                        if (entry.orderKey != null) {
+                            keys.add(entry.orderKey);
+                        }
+                    }
+                }
+                Collections.sort(keys);
+                for (int i = 1; i < keys.size(); i++) {
+                    if (keys.get(i) - keys.get(i - 1) < minGap) {
+                        crowded.add(queue.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+        return crowded;
+    }
+
+    /**
+     * Claim the next patient to serve: the first NOTIFIED or WAITING patient in queue order.
+     * The patient is moved to SERVING here in the same step, so two callers in this JVM can
+     * never claim the same patient. Nobody is claimed while a patient is already being served.
+     * The claim only reserves the patient in memory; callers must still confirm it against
+     * the database row, which is what rules out double dispatch across application instances.
+     *
+     * @return The claimed patient's id, or null if nobody can be called
+     */
+    public Long claimNext(Long queueId) {
+        return claim(queueId, true);
+    }
+
+    /**
+     * Claim the next patient to serve at one of several counters of a queue. Same as
+     * {@link #claimNext(Long)}, except that other patients may be being served: callers
+     * hold the counter's row lock and have checked that this counter is free.
+     *
+     * @return The claimed patient's id, or null if nobody is waiting
+     */
+    public Long claimNextForCounter(Long queueId) {
+        return claim(queueId, false);
+    }
+
+    private Long claim(Long queueId, boolean singleDesk) {
+        QueueState state = state(queueId);
+        Entry claimed;
+        synchronized (state) {
+            if (singleDesk && !state.byStatus.get(PatientStatus.SERVING).isEmpty()) {
+                return null;
+            }
+            claimed = first(state.byStatus.get(PatientStatus.NOTIFIED), state.byStatus.get(PatientStatus.WAITING));
+            if (claimed == null) {
+                return null;
+            }
+            state.remove(claimed.patientId);
+            state.add(new Entry(claimed.patientId, PatientStatus.SERVING, claimed.orderKey));
+        }
+        recordChange(queueId);
+        return claimed.patientId;
+    }
+
+    /**
+     * Number of patients in the given active status.
+     */
+    public int count(Long queueId, PatientStatus status) {
+        QueueState state = state(queueId);
+        synchronized (state) {
+            TreeSet<Entry> entries = state.byStatus.get(status);
+            return entries != null ? entries.size() : 0;
+        }
+    }
+
+    /**
+     * Drop the in-memory state of a queue; it is reloaded from the database on next access.
+     */
+    public void evict(Long queueId) {
+        queues.remove(queueId);
+    }
+
+    /**
+     * Drop the state of a deleted queue here and, once the deleting transaction commits, on
+     * the other nodes too.
+     */
+    public void forget(Long queueId) {
+        evict(queueId);
+        recordChange(queueId);
+    }
+
+    /**
+     * Drop queues another node has changed.
+     */
+    @EventListener
+    public void onCacheInvalidation(CacheInvalidationDTO invalidation) {
+        if (invalidation.getCache() != CacheInvalidationDTO.Cache.QUEUE_ENGINE) {
+            return;
+        }
+        if (invalidation.getId() != null) {
+            evict(invalidation.getId());
+        } else {
+            queues.clear();
+        }
+    }
+
+    private List<Long> patientIds(Long queueId, PatientStatus status, int limit) {
+        QueueState state = state(queueId);
+        synchronized (state) {
+            List<Long> ids = new ArrayList<>();
+            for (Entry entry : state.byStatus.get(status)) {
+                if (ids.size() >= limit) {
+                    break;
+                }
+                ids.add(entry.patientId);
+            }
+            return ids;
+        }
+    }
+
+    private Long neighbour(Long queueId, Long patientId, Long skipPatientId, boolean previous) {
+        QueueState state = state(queueId);
+        synchronized (state) {
+            Entry from = state.byPatientId.get(patientId);
+            if (from == null) {
+                return null;
+            }
+            Entry closest = null;
+            for (PatientStatus status : CALLABLE_STATUSES) {
+                TreeSet<Entry> entries = state.byStatus.get(status);
+                Entry candidate = previous ? entries.lower(from) : entries.higher(from);
+                if (candidate != null && candidate.patientId.equals(skipPatientId)) {
+                    candidate = previous ? entries.lower(candidate) : entries.higher(candidate);
+                }
+                if (candidate != null && (closest == null
+                        || (previous ? BY_ORDER.compare(candidate, closest) > 0 : BY_ORDER.compare(candidate, closest) < 0))) {
+                    closest = candidate;
+                }
+            }
+            return closest != null ? closest.patientId : null;
+        }
+    }
+
+    private static Entry first(TreeSet<Entry> notified, TreeSet<Entry> waiting) {
+        if (notified.isEmpty()) {
+            return waiting.isEmpty() ? null : waiting.first();
+        }
+        if (waiting.isEmpty()) {
+            return notified.first();
+        }
+        return BY_ORDER.compare(notified.first(), waiting.first()) <= 0 ? notified.first() : waiting.first();
+    }
+
+    private QueueState state(Long queueId) {
+        QueueState state = queues.get(queueId);
+        if (state != null) {
+            return state;
+        }
+        // Load outside of the map so a slow query does not block other queues
+        QueueState loaded = QueueState.of(
+                patientRepository.findActiveByQueueIdAndStatusIn(queueId, ACTIVE_STATUSES));
+        QueueState existing = queues.putIfAbsent(queueId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    // If the surrounding transaction rolls back, the in-memory state no longer matches the database.
+    // If it commits, the copies other nodes hold no longer do.
+    private void recordChange(Long queueId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            backplane.invalidate(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.QUEUE_ENGINE, queueId));
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof ChangedQueues && ((ChangedQueues) synchronization).owner() == this) {
+                ((ChangedQueues) synchronization).queueIds.add(queueId);
+                return;
+            }
+        }
+        ChangedQueues changedQueues = new ChangedQueues();
+        changedQueues.queueIds.add(queueId);
+        TransactionSynchronizationManager.registerSynchronization(changedQueues);
+    }
+
+    // Queues changed by a transaction, each reported once when it completes
+    private class ChangedQueues implements TransactionSynchronization {
+        private final Set<Long> queueIds = new HashSet<>();
+
+        private QueueEngine owner() {
+            return QueueEngine.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            for (Long queueId : queueIds) {
+                if (status == STATUS_COMMITTED) {
+                    backplane.invalidate(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.QUEUE_ENGINE, queueId));
+                } else {
+                    evict(queueId);
+                }
+            }
+        }
+    }
+
+    private static final Comparator<Entry> BY_ORDER = Comparator
+            .comparing((Entry e) -> e.orderKey, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(e -> e.patientId);
+
+    private static final class Entry {
+        private final Long patientId;
+        private final PatientStatus status;
+        private final Long orderKey;
+
+        private Entry(Long patientId, PatientStatus status, Long orderKey) {
+            this.patientId = patientId;
+            this.status = status;
+            this.orderKey = orderKey;
+        }
+    }
+
+    /**
+     * Per-queue state. All access is guarded by the instance monitor.
+     */
+    private static final class QueueState {
+        private final Map<PatientStatus, TreeSet<Entry>> byStatus = new EnumMap<>(PatientStatus.class);
+        private final Map<Long, Entry> byPatientId = new HashMap<>();
+
+        private QueueState() {
+            for (PatientStatus status : ACTIVE_STATUSES) {
+                byStatus.put(status, new TreeSet<>(BY_ORDER));
+            }
+        }
+
+        private static QueueState of(List<ActivePatientProjection> patients) {
+            QueueState state = new QueueState();
+            for (ActivePatientProjection patient : patients) {
+                state.add(new Entry(patient.getId(), patient.getStatus(), patient.getOrderKey()));
+            }
+            return state;
+        }
+
+        private void add(Entry entry) {
+            byPatientId.put(entry.patientId, entry);
+            byStatus.get(entry.status).add(entry);
+        }
+
+        private void remove(Long patientId) {
+            Entry existing = byPatientId.remove(patientId);
+            if (existing != null) {
+                byStatus.get(existing.status).remove(existing);
+            }
+        }
+    }
+}
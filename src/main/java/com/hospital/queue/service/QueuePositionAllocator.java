@@ -0,0 +1,57 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.exception.ResourceNotFoundException;
+import com.hospital.queue.repository.QueueRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Hands out queue positions from the per-queue counter stored on the queues table.
+ *
+ * Each allocation is a single atomic increment of queues.next_position, so it costs
+ * the same no matter how many patients the queue has ever had, and two registrations
+ * can never receive the same position. The increment takes the queue's row lock and
+ * holds it until the caller commits, which is all the serialisation allocation needs;
+ * Postgres also detects any deadlock between two bulk registrations touching the same
+ * queues in a different order.
+ */
+@Service
+public class QueuePositionAllocator {
+
+    private final QueueRepository queueRepository;
+
+    public QueuePositionAllocator(QueueRepository queueRepository) {
+        this.queueRepository = queueRepository;
+    }
+
+    /**
+     * Allocate the next position in a queue.
+     *
+     * @param queueId Queue ID
+     * @return The allocated position
+     */
+    @Transactional
+    public int allocate(Long queueId) {
+        return allocate(queueId, 1);
+    }
+
+    /**
+     * Allocate a contiguous block of positions in a queue.
+     * Positions are reserved in the caller's transaction and released again if it rolls back.
+     *
+     * @param queueId Queue ID
+     * @param count Number of positions to reserve
+     * @return The first position of the block
+     */
+    @Transactional
+    public int allocate(Long queueId, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Position count must be positive");
+        }
+
+        if (queueRepository.advanceNextPosition(queueId, count) == 0) {
+            throw new ResourceNotFoundException("Queue not found with id: " + queueId);
+        }
+        return queueRepository.findNextPositionById(queueId) - count;
+    }
+}
@@ -6,56 +6,119 @@ import com.hospital.queue.dto.QueueDetailsDTO;
 import com.hospital.queue.exception.ResourceNotFoundException;
 import com.hospital.queue.model.Department;
 import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.PatientHistory;
 import com.hospital.queue.model.Queue;
 import com.hospital.queue.repository.DepartmentRepository;
+import com.hospital.queue.repository.PatientHistoryRepository;
 import com.hospital.queue.repository.PatientRepository;
 import com.hospital.queue.repository.QueueRepository;
+import com.hospital.queue.repository.StatusCountProjection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class QueueService {
 
+    public static final int DEFAULT_HISTORY_LIMIT = 50;
+    public static final int MAX_HISTORY_LIMIT = 200;
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+
     private final QueueRepository queueRepository;
     private final DepartmentRepository departmentRepository;
     private final PatientRepository patientRepository;
+    private final PatientHistoryRepository patientHistoryRepository;
     private final QRCodeService qrCodeService;
     private final NotificationService notificationService;
+    private final QueueEngine queueEngine;
+    private final DeviceTokenCache deviceTokenCache;
     
     public QueueService(QueueRepository queueRepository, 
                       DepartmentRepository departmentRepository,
                       PatientRepository patientRepository,
+                      PatientHistoryRepository patientHistoryRepository,
                       QRCodeService qrCodeService,
-                      NotificationService notificationService) {
+                      NotificationService notificationService,
+                      QueueEngine queueEngine,
+                      DeviceTokenCache deviceTokenCache) {
         this.queueRepository = queueRepository;
         this.departmentRepository = departmentRepository;
         this.patientRepository = patientRepository;
+        this.patientHistoryRepository = patientHistoryRepository;
         this.qrCodeService = qrCodeService;
         this.notificationService = notificationService;
+        this.queueEngine = queueEngine;
+        this.deviceTokenCache = deviceTokenCache;
     }
 
     public List<QueueDTO> getAllQueues() {
-        return queueRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return queueRepository.findAllAsDto();
+    }
+
+    /**
+     * Get a page of queues in id order. Pass the id of the last queue of a page as
+     * afterId to get the next one.
+     * 
+     * @param afterId Only queues with a larger id are returned; null for the first page
+     * @param limit Maximum number of queues to return
+     * @return Page of queues
+     */
+    public List<QueueDTO> getQueues(Long afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return queueRepository.findPageAfterId(afterId != null ? afterId : 0L, PageRequest.of(0, limit));
     }
 
     public List<QueueDTO> getQueuesByDepartment(Long departmentId) {
-        return queueRepository.findByDepartmentId(departmentId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return queueRepository.findAsDtoByDepartmentId(departmentId);
     }
 
     public QueueDetailsDTO getQueueDetails(Long queueId) {
+        return getQueueDetails(queueId, false);
+    }
+
+    public QueueDetailsDTO getQueueDetails(Long queueId, boolean includeQrCodeImage) {
+        return getQueueDetails(queueId, includeQrCodeImage, null, null, null, DEFAULT_HISTORY_LIMIT, false);
+    }
+
+    /**
+     * Get the details of a queue.
+     *
+     * Only the sections for the requested statuses are loaded. Served and cancelled history
+     * is paged from the most recent patient backwards; counts always cover the whole queue.
+     *
+     * @param queueId Queue ID
+     * @param includeQrCodeImage Whether to embed the Base64 QR code image
+     * @param statuses Statuses to include, or null/empty for all of them
+     * @param servedBefore Cursor returned as servedNextCursor, or null for the first page
+     * @param cancelledBefore Cursor returned as cancelledNextCursor, or null for the first page
+     * @param historyLimit Maximum number of served and cancelled patients to return
+     * @param includeHistory Whether served/cancelled lists and counts include archived patients
+     * @return Queue details
+     */
+    public QueueDetailsDTO getQueueDetails(Long queueId, boolean includeQrCodeImage, Set<Patient.PatientStatus> statuses,
+                                           Long servedBefore, Long cancelledBefore, int historyLimit,
+                                           boolean includeHistory) {
         if (queueId == null) {
             System.err.println("getQueueDetails called with null queueId");
             throw new IllegalArgumentException("Queue ID cannot be null");
         }
+        if (historyLimit < 1 || historyLimit > MAX_HISTORY_LIMIT) {
+            throw new IllegalArgumentException("History limit must be between 1 and " + MAX_HISTORY_LIMIT);
+        }
         
         System.out.println("Fetching queue details for ID: " + queueId);
         
@@ -68,53 +131,125 @@ public class QueueService {
         System.out.println("Found queue: " + queue.getName() + " (ID: " + queue.getId() + ")");
         
         QueueDetailsDTO queueDetails = new QueueDetailsDTO();
+        // Read the version before the patients so events published meanwhile are re-applied, never lost
+        queueDetails.setVersion(notificationService.currentVersion(queueId));
         queueDetails.setId(queue.getId());
         queueDetails.setName(queue.getName());
         queueDetails.setDescription(queue.getDescription());
         queueDetails.setDepartmentId(queue.getDepartment().getId());
         queueDetails.setDepartmentName(queue.getDepartment().getName());
         queueDetails.setQrCodeId(queue.getQrCodeId());
+        queueDetails.setQrCodeImageUrl("/api/queues/" + queue.getId() + "/qr-code.png");
         
-        try {
-            queueDetails.setQrCodeImage(qrCodeService.generateQRCodeImage(queue.getQrCodeId(), 250, 250));
-        } catch (WriterException | IOException e) {
-            queueDetails.setQrCodeImage(null);
+        // The Base64 image is only embedded on request; displays should use the cacheable PNG endpoint
+        if (includeQrCodeImage) {
+            try {
+                queueDetails.setQrCodeImage(qrCodeService.generateQRCodeImage(queue.getQrCodeId(), 250, 250));
+            } catch (WriterException | IOException e) {
+                queueDetails.setQrCodeImage(null);
+            }
         }
         
-        // Get all patients in this queue, grouped by status
-        List<Patient> allPatients = patientRepository.findByQueueIdOrderByQueuePosition(queueId);
+        // Counts are computed by the database instead of loading every patient of the day
+        Map<Patient.PatientStatus, Long> counts = new EnumMap<>(Patient.PatientStatus.class);
+        for (StatusCountProjection count : patientRepository.countByQueueIdGroupByStatus(queueId)) {
+            counts.put(count.getStatus(), count.getCount());
+        }
+        if (includeHistory) {
+            for (StatusCountProjection count : patientHistoryRepository.countByQueueIdGroupByStatus(queueId)) {
+                counts.merge(count.getStatus(), count.getCount(), Long::sum);
+            }
+        }
+        queueDetails.setWaitingCount((int) (counts.getOrDefault(Patient.PatientStatus.WAITING, 0L)
+                + counts.getOrDefault(Patient.PatientStatus.NOTIFIED, 0L)));
+        queueDetails.setServedCount(counts.getOrDefault(Patient.PatientStatus.SERVED, 0L).intValue());
+        queueDetails.setCancelledCount(counts.getOrDefault(Patient.PatientStatus.CANCELLED, 0L).intValue());
         
-        // Get current serving patient
-        List<Patient> servingPatients = allPatients.stream()
-                .filter(p -> p.getStatus() == Patient.PatientStatus.SERVING)
-                .collect(Collectors.toList());
-                
-        if (!servingPatients.isEmpty()) {
-            queueDetails.setCurrentPatient(servingPatients.get(0));
+        Set<Patient.PatientStatus> included = statuses == null || statuses.isEmpty()
+                ? EnumSet.allOf(Patient.PatientStatus.class)
+                : EnumSet.copyOf(statuses);
+        
+        // Get the patients being served, one per counter
+        if (included.contains(Patient.PatientStatus.SERVING)) {
+            List<Patient> servingPatients = patientRepository.findWithCounterByQueueIdAndStatusOrderByOrderKey(
+                    queueId, Patient.PatientStatus.SERVING);
+            queueDetails.setServingPatients(servingPatients);
+            if (!servingPatients.isEmpty()) {
+                queueDetails.setCurrentPatient(servingPatients.get(0));
+            }
         }
         
         // Get waiting and notified patients (these should be shown in the waiting list)
-        List<Patient> waitingPatients = allPatients.stream()
-                .filter(p -> p.getStatus() == Patient.PatientStatus.WAITING || 
-                             p.getStatus() == Patient.PatientStatus.NOTIFIED)
-                .collect(Collectors.toList());
-        queueDetails.setWaitingPatients(waitingPatients);
-        
-        // Get served patients
-        List<Patient> servedPatients = allPatients.stream()
-                .filter(p -> p.getStatus() == Patient.PatientStatus.SERVED)
-                .collect(Collectors.toList());
-        queueDetails.setServedPatients(servedPatients);
-        
-        // Get cancelled patients
-        List<Patient> cancelledPatients = allPatients.stream()
-                .filter(p -> p.getStatus() == Patient.PatientStatus.CANCELLED)
-                .collect(Collectors.toList());
-        queueDetails.setCancelledPatients(cancelledPatients);
+        List<Patient.PatientStatus> waitingStatuses = new ArrayList<>();
+        if (included.contains(Patient.PatientStatus.NOTIFIED)) {
+            waitingStatuses.add(Patient.PatientStatus.NOTIFIED);
+        }
+        if (included.contains(Patient.PatientStatus.WAITING)) {
+            waitingStatuses.add(Patient.PatientStatus.WAITING);
+        }
+        if (!waitingStatuses.isEmpty()) {
+            queueDetails.setWaitingPatients(
+                    patientRepository.findByQueueIdAndStatusInOrderByOrderKey(queueId, waitingStatuses));
+        }
+        
+        // Get served patients, most recent first
+        if (included.contains(Patient.PatientStatus.SERVED)) {
+            List<Patient> servedPatients = findHistoryPage(
+                    queue, Patient.PatientStatus.SERVED, servedBefore, historyLimit, includeHistory);
+            queueDetails.setServedPatients(servedPatients);
+            queueDetails.setServedNextCursor(nextCursor(servedPatients, historyLimit));
+        }
+        
+        // Get cancelled patients, most recent first
+        if (included.contains(Patient.PatientStatus.CANCELLED)) {
+            List<Patient> cancelledPatients = findHistoryPage(
+                    queue, Patient.PatientStatus.CANCELLED, cancelledBefore, historyLimit, includeHistory);
+            queueDetails.setCancelledPatients(cancelledPatients);
+            queueDetails.setCancelledNextCursor(nextCursor(cancelledPatients, historyLimit));
+        }
         
         return queueDetails;
     }
 
+    private List<Patient> findHistoryPage(Queue queue, Patient.PatientStatus status, Long before, int limit,
+                                          boolean includeHistory) {
+        Long queueId = queue.getId();
+        Pageable page = PageRequest.of(0, limit);
+        List<Patient> patients = before == null
+                ? patientRepository.findByQueueIdAndStatusOrderByIdDesc(queueId, status, page)
+                : patientRepository.findByQueueIdAndStatusAndIdLessThanOrderByIdDesc(queueId, status, before, page);
+        if (!includeHistory) {
+            return patients;
+        }
+        
+        // Archived rows keep their ids, so one id cursor pages through both tables
+        List<PatientHistory> archived = before == null
+                ? patientHistoryRepository.findByQueueIdAndStatusOrderByIdDesc(queueId, status, page)
+                : patientHistoryRepository.findByQueueIdAndStatusAndIdLessThanOrderByIdDesc(queueId, status, before, page);
+        List<Patient> merged = new ArrayList<>(patients);
+        for (PatientHistory history : archived) {
+            merged.add(history.toPatient(queue));
+        }
+        merged.sort(Comparator.comparing(Patient::getId).reversed());
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    // A full page means there may be more; the last id is where the next page starts
+    private Long nextCursor(List<Patient> page, int limit) {
+        return page.size() == limit ? page.get(page.size() - 1).getId() : null;
+    }
+
+    public QRCodeService.QRCodeImage getQueueQRCode(Long queueId, int width, int height) {
+        String qrCodeId = queueRepository.findQrCodeIdById(queueId)
+                .orElseThrow(() -> new ResourceNotFoundException("Queue not found with id: " + queueId));
+        
+        try {
+            return qrCodeService.getQRCodeImage(qrCodeId, width, height);
+        } catch (WriterException | IOException e) {
+            throw new IllegalStateException("Failed to generate QR code for queue " + queueId, e);
+        }
+    }
+
     @Transactional
     public QueueDTO createQueue(QueueDTO queueDTO) {
         Department department = departmentRepository.findById(queueDTO.getDepartmentId())
@@ -154,23 +289,31 @@ public class QueueService {
 
     @Transactional
     public void deleteQueue(Long id) {
-        Queue queue = queueRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Queue not found with id: " + id));
+        if (!queueRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Queue not found with id: " + id);
+        }
         
-        // First, delete all patients in this queue
-        List<Patient> patients = patientRepository.findByQueueIdOrderByQueuePosition(id);
-        if (!patients.isEmpty()) {
-            System.out.println("Deleting " + patients.size() + " patients from queue " + id);
-            patientRepository.deleteAll(patients);
+        // First, delete all patients in this queue with a single statement; their devices go with them
+        int deletedPatients = patientRepository.bulkDeleteByQueueId(id);
+        if (deletedPatients > 0) {
+            System.out.println("Deleted " + deletedPatients + " patients from queue " + id);
         }
         
-        // Then delete the queue itself
-        queueRepository.delete(queue);
+        // Then delete the queue itself, without loading it and its patients collection
+        queueRepository.bulkDeleteById(id);
+        queueRepository.deleteEventVersionById(id);
+        
+        // Every node drops the queue and the tokens of its patients once the deletion commits
+        queueEngine.forget(id);
+        if (deletedPatients > 0) {
+            deviceTokenCache.invalidateAll();
+        }
         
         System.out.println("Queue " + id + " deleted successfully");
     }
 
-    private QueueDTO convertToDTO(Queue queue) {
+    // Package-private so the DTO conversion benchmark can call it directly
+    QueueDTO convertToDTO(Queue queue) {
         QueueDTO dto = new QueueDTO();
         dto.setId(queue.getId());
         dto.setName(queue.getName());
@@ -0,0 +1,197 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.QueueEventDTO;
+import com.hospital.queue.dto.QueueUpdateDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses queue events into one WebSocket message per queue.
+ *
+ * Events raised inside a transaction are held until it commits and then published as a
+ * single {@link QueueUpdateDTO} per queue (and dropped if it rolls back). Events raised
+ * outside a transaction are collected for a short window before being published.
+ * Versions come from the queue's counter in the database, taken just before the transaction
+ * commits, so a rolled back transaction leaves no gap and all nodes number a queue's
+ * messages from one sequence. The counter is held only while the transaction commits, so
+ * concurrent transactions of a queue, such as dispatch at different counters, wait for each
+ * other just for that long. Messages of concurrent transactions can still arrive out of
+ * order; subscribers treat that like any other gap.
+ */
+@Service
+public class QueueUpdateCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueUpdateCoalescer.class);
+
+    private final MessageBackplane backplane;
+    private final QueueVersionAllocator versionAllocator;
+    private final long windowMillis;
+    private final Map<Long, List<QueueEventDTO>> windowed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "queue-update-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter eventsCounter;
+    private final Counter messagesCounter;
+    private final Counter mergedCounter;
+
+    public QueueUpdateCoalescer(MessageBackplane backplane,
+                                QueueVersionAllocator versionAllocator,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.websocket.coalesce-window-ms:50}") long windowMillis) {
+        this.backplane = backplane;
+        this.versionAllocator = versionAllocator;
+        this.windowMillis = windowMillis;
+        this.eventsCounter = meterRegistry.counter("queue.updates.events");
+        this.messagesCounter = meterRegistry.counter("queue.updates.messages");
+        this.mergedCounter = meterRegistry.counter("queue.updates.merged");
+    }
+
+    /**
+     * Queue an event for publishing.
+     */
+    public void submit(QueueEventDTO event) {
+        eventsCounter.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionBuffer().add(event);
+            return;
+        }
+
+        // Appending inside compute() keeps it atomic with the removal in flushWindow
+        windowed.compute(event.getQueueId(), (id, pending) -> {
+            if (pending == null) {
+                pending = new ArrayList<>();
+                scheduler.schedule(() -> flushWindow(id), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            pending.add(event);
+            return pending;
+        });
+    }
+
+    /**
+     * Version of the last event published for a queue.
+     */
+    public long currentVersion(Long queueId) {
+        return versionAllocator.currentVersion(queueId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private void flushWindow(Long queueId) {
+        List<QueueEventDTO> events = windowed.remove(queueId);
+        if (events == null) {
+            return;
+        }
+        try {
+            QueueUpdateDTO update = prepare(queueId, events);
+            if (update != null) {
+                publish(update);
+            }
+        } catch (Exception e) {
+            // No versions were reserved, so the next message leaves no gap: these events are lost
+            // to subscribers until they fetch a fresh snapshot for another reason
+            logger.error("Could not version queue {} events: {}", queueId, e.getMessage());
+        }
+    }
+
+    // Merge the events of a queue and number them; null if the queue is gone
+    private QueueUpdateDTO prepare(Long queueId, List<QueueEventDTO> events) {
+        List<QueueEventDTO> merged = merge(events);
+        long toVersion = versionAllocator.allocate(queueId, merged.size());
+        if (toVersion == 0) {
+            logger.debug("Not publishing {} events of deleted queue {}", merged.size(), queueId);
+            return null;
+        }
+
+        long fromVersion = toVersion - merged.size() + 1;
+        long version = fromVersion;
+        for (QueueEventDTO event : merged) {
+            event.setVersion(version++);
+        }
+        mergedCounter.increment(events.size() - 1);
+        return new QueueUpdateDTO(queueId, fromVersion, toVersion, merged);
+    }
+
+    private void publish(QueueUpdateDTO update) {
+        try {
+            backplane.publish("/topic/queue/" + update.getQueueId(), update);
+            messagesCounter.increment();
+        } catch (Exception e) {
+            // Log the error but don't let it disrupt the application flow
+            logger.error("WebSocket queue broadcast failed: {}", e.getMessage());
+        }
+    }
+
+    // A resync request makes every delta in the same message redundant
+    private List<QueueEventDTO> merge(List<QueueEventDTO> events) {
+        for (QueueEventDTO event : events) {
+            if (event.getType() == QueueEventDTO.EventType.QUEUE_UPDATED) {
+                return Collections.singletonList(event);
+            }
+        }
+        return events;
+    }
+
+    private List<QueueEventDTO> transactionBuffer() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionBuffer && ((TransactionBuffer) synchronization).owner() == this) {
+                return ((TransactionBuffer) synchronization).events;
+            }
+        }
+        TransactionBuffer buffer = new TransactionBuffer();
+        TransactionSynchronizationManager.registerSynchronization(buffer);
+        return buffer.events;
+    }
+
+    private class TransactionBuffer implements TransactionSynchronization {
+        private final List<QueueEventDTO> events = new ArrayList<>();
+        private final List<QueueUpdateDTO> updates = new ArrayList<>();
+
+        private QueueUpdateCoalescer owner() {
+            return QueueUpdateCoalescer.this;
+        }
+
+        // Versions are reserved in the committing transaction, counters locked in queue id order
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            Map<Long, List<QueueEventDTO>> byQueue = new TreeMap<>();
+            for (QueueEventDTO event : events) {
+                byQueue.computeIfAbsent(event.getQueueId(), id -> new ArrayList<>()).add(event);
+            }
+            byQueue.forEach((queueId, queueEvents) -> {
+                QueueUpdateDTO update = prepare(queueId, queueEvents);
+                if (update != null) {
+                    updates.add(update);
+                }
+            });
+        }
+
+        @Override
+        public void afterCommit() {
+            updates.forEach(QueueUpdateCoalescer.this::publish);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.repository.QueueRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Hands out the versions of queue events from a per-queue counter in the database.
+ *
+ * Every application instance draws from the same counter, so the messages of a queue carry a
+ * single sequence of versions whichever instance publishes them, and REST snapshots report
+ * the same version on every instance. Versions are reserved by an atomic increment whose row
+ * lock lasts until the caller commits. The counters have a table of their own that no other
+ * path locks, and the caller's pending changes are flushed first, so while a transaction holds
+ * a counter it only ever waits for the counters of other queues, which are taken in id order.
+ */
+@Service
+public class QueueVersionAllocator {
+
+    private final QueueRepository queueRepository;
+
+    public QueueVersionAllocator(QueueRepository queueRepository) {
+        this.queueRepository = queueRepository;
+    }
+
+    /**
+     * Reserve the next {@code count} versions of a queue.
+     *
+     * @param queueId Queue ID
+     * @param count Number of versions to reserve
+     * @return The last reserved version, or 0 if the queue no longer exists
+     */
+    @Transactional
+    public long allocate(Long queueId, int count) {
+        // Take the patient row locks of pending changes before the counter, never while holding it
+        queueRepository.flush();
+        if (queueRepository.advanceEventVersion(queueId, count) == 0) {
+            return 0L;
+        }
+        return queueRepository.findEventVersionById(queueId);
+    }
+
+    /**
+     * Version of the last event published for a queue, 0 before the first one.
+     */
+    public long currentVersion(Long queueId) {
+        Long version = queueRepository.findEventVersionById(queueId);
+        return version != null ? version : 0L;
+    }
+}
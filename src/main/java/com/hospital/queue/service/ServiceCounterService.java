@@ -0,0 +1,105 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.ServiceCounterDTO;
+import com.hospital.queue.exception.ResourceNotFoundException;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.Queue;
+import com.hospital.queue.model.ServiceCounter;
+import com.hospital.queue.repository.PatientRepository;
+import com.hospital.queue.repository.QueueRepository;
+import com.hospital.queue.repository.ServiceCounterRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Counters (desks) of a queue. Patients are called to a counter through
+ * {@link PatientService#callNextPatient(Long, Long)}.
+ */
+@Service
+public class ServiceCounterService {
+
+    private final ServiceCounterRepository counterRepository;
+    private final QueueRepository queueRepository;
+    private final PatientRepository patientRepository;
+    private final NotificationService notificationService;
+
+    public ServiceCounterService(ServiceCounterRepository counterRepository,
+                                 QueueRepository queueRepository,
+                                 PatientRepository patientRepository,
+                                 NotificationService notificationService) {
+        this.counterRepository = counterRepository;
+        this.queueRepository = queueRepository;
+        this.patientRepository = patientRepository;
+        this.notificationService = notificationService;
+    }
+
+    public List<ServiceCounterDTO> getCounters(Long queueId) {
+        if (!queueRepository.existsById(queueId)) {
+            throw new ResourceNotFoundException("Queue not found with id: " + queueId);
+        }
+
+        return counterRepository.findAsDtoByQueueId(queueId, Patient.PatientStatus.SERVING);
+    }
+
+    @Transactional
+    public ServiceCounterDTO createCounter(Long queueId, ServiceCounterDTO counterDTO) {
+        Queue queue = queueRepository.findById(queueId)
+                .orElseThrow(() -> new ResourceNotFoundException("Queue not found with id: " + queueId));
+
+        ServiceCounter counter = new ServiceCounter();
+        counter.setName(counterDTO.getName());
+        counter.setQueue(queue);
+        if (counterDTO.getOpen() != null) {
+            counter.setOpen(counterDTO.getOpen());
+        }
+
+        ServiceCounter savedCounter = counterRepository.save(counter);
+        notificationService.broadcastQueueUpdate(queueId);
+        return convertToDTO(savedCounter);
+    }
+
+    /**
+     * Rename a counter or open and close it. A closed counter finishes serving its current
+     * patient but is not called to again until it is reopened.
+     */
+    @Transactional
+    public ServiceCounterDTO updateCounter(Long queueId, Long counterId, ServiceCounterDTO counterDTO) {
+        ServiceCounter counter = getCounter(queueId, counterId);
+        counter.setName(counterDTO.getName());
+        if (counterDTO.getOpen() != null) {
+            counter.setOpen(counterDTO.getOpen());
+        }
+
+        ServiceCounter updatedCounter = counterRepository.save(counter);
+        notificationService.broadcastQueueUpdate(queueId);
+        return convertToDTO(updatedCounter);
+    }
+
+    @Transactional
+    public void deleteCounter(Long queueId, Long counterId) {
+        ServiceCounter counter = getCounter(queueId, counterId);
+        if (patientRepository.existsByCounterIdAndStatus(counterId, Patient.PatientStatus.SERVING)) {
+            throw new IllegalArgumentException("Counter " + counterId + " is still serving a patient");
+        }
+
+        counterRepository.delete(counter);
+        notificationService.broadcastQueueUpdate(queueId);
+    }
+
+    private ServiceCounter getCounter(Long queueId, Long counterId) {
+        return counterRepository.findByIdAndQueueId(counterId, queueId)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Counter not found with id: " + counterId + " in queue: " + queueId));
+    }
+
+    private ServiceCounterDTO convertToDTO(ServiceCounter counter) {
+        ServiceCounterDTO dto = new ServiceCounterDTO();
+        dto.setId(counter.getId());
+        dto.setName(counter.getName());
+        dto.setQueueId(counter.getQueue().getId());
+        dto.setOpen(counter.isOpen());
+        return dto;
+    }
+}
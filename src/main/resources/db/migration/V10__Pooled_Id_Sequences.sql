@@ -0,0 +1,16 @@
+-- V10__Pooled_Id_Sequences.sql
+-- Patients, devices and outbox rows get their ids from Hibernate's pooled optimizer, which
+-- reserves a block of 50 ids per sequence call so inserts can be sent as JDBC batches.
+-- The increment must match the allocationSize of the entity mappings.
+
+DO $$
+DECLARE
+  seq TEXT;
+BEGIN
+  FOREACH seq IN ARRAY ARRAY['patients_id_seq', 'patient_devices_id_seq', 'notification_outbox_id_seq'] LOOP
+    EXECUTE format('ALTER SEQUENCE %I INCREMENT BY 50', seq);
+    -- A pooled block ends at the value returned by nextval, so mark the current value as used
+    -- to make the first block start past every id handed out so far, including archived ones
+    EXECUTE format('SELECT setval(%L, (SELECT last_value FROM %I), true)', seq, seq);
+  END LOOP;
+END $$;
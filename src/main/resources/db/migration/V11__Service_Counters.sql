@@ -0,0 +1,25 @@
+-- V11__Service_Counters.sql
+-- Counters (desks) of a queue. Each open counter serves one patient at a time, so a queue
+-- with several counters serves several patients at once.
+
+CREATE TABLE IF NOT EXISTS service_counters (
+    id BIGSERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    queue_id BIGINT NOT NULL,
+    open BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP,
+    FOREIGN KEY (queue_id) REFERENCES queues(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_service_counter_queue ON service_counters(queue_id);
+
+-- Counter a patient is or was served at; null for queues served at a single desk
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS counter_id BIGINT;
+ALTER TABLE patients ADD CONSTRAINT fk_patient_counter
+    FOREIGN KEY (counter_id) REFERENCES service_counters(id) ON DELETE SET NULL;
+
+-- Checked under the counter's row lock on every call of the next patient to a counter
+CREATE INDEX IF NOT EXISTS idx_patient_serving_counter
+    ON patients(counter_id)
+    WHERE status = 'SERVING';
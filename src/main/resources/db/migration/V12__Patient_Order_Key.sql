@@ -0,0 +1,21 @@
+-- V12__Patient_Order_Key.sql
+-- Sparse ordering key of the patients of a queue. queue_position stays the number a patient
+-- gets on joining; order_key decides who is called first. Keys start out as the position
+-- times 1024 (Patient.ORDER_KEY_GAP), so a patient can be moved between any two others by
+-- rewriting only its own key.
+
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS order_key BIGINT;
+
+UPDATE patients SET order_key = COALESCE(queue_position, 0)::BIGINT * 1024 WHERE order_key IS NULL;
+
+ALTER TABLE patients ALTER COLUMN order_key SET NOT NULL;
+
+-- The active and waiting list indexes of V7/V8 now sort by the order key
+CREATE INDEX IF NOT EXISTS idx_patient_active_queue_order
+    ON patients(queue_id, order_key)
+    WHERE status IN ('WAITING', 'NOTIFIED', 'SERVING');
+
+CREATE INDEX IF NOT EXISTS idx_patient_queue_status_order ON patients(queue_id, status, order_key);
+
+DROP INDEX IF EXISTS idx_patient_active_queue_position;
+DROP INDEX IF EXISTS idx_patient_queue_status_position;
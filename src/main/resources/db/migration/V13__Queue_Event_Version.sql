@@ -0,0 +1,12 @@
+-- V13__Queue_Event_Version.sql
+-- Version of the last event published on /topic/queue/{id}. Kept in the database rather than
+-- in each application instance, so subscribers see one sequence of versions per queue
+-- whichever instance published an event and whichever one serves the REST snapshot.
+
+-- A table of its own rather than a column of queues: versions are reserved while a transaction
+-- commits, after it has locked patient rows, and no other path ever locks these rows. There is
+-- no foreign key, as checking one would lock the queue row too; deleting a queue deletes its row.
+CREATE TABLE IF NOT EXISTS queue_event_versions (
+    queue_id BIGINT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
@@ -0,0 +1,8 @@
+-- V5__Queue_Position_Counter.sql
+-- Per-queue position counter so registration no longer needs a MAX() scan over patients
+
+ALTER TABLE queues ADD COLUMN IF NOT EXISTS next_position INTEGER NOT NULL DEFAULT 1;
+
+-- Continue numbering after the highest position already handed out in each queue
+UPDATE queues q
+SET next_position = COALESCE((SELECT MAX(p.queue_position) FROM patients p WHERE p.queue_id = q.id), 0) + 1;
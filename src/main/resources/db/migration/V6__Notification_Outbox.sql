@@ -0,0 +1,20 @@
+-- V6__Notification_Outbox.sql
+-- Outbox for patient notifications, written in the same transaction as the status change
+-- and drained by a background dispatcher after commit
+
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    event_type VARCHAR(32) NOT NULL,
+    patient_id BIGINT NOT NULL,
+    queue_id BIGINT,
+    status VARCHAR(20),
+    payload TEXT,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    dispatched_at TIMESTAMP
+);
+
+-- Only undispatched rows are ever polled
+CREATE INDEX IF NOT EXISTS idx_outbox_pending ON notification_outbox(id) WHERE dispatched_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_outbox_dispatched_at ON notification_outbox(dispatched_at);
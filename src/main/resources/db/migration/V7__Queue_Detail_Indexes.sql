@@ -0,0 +1,8 @@
+-- V7__Queue_Detail_Indexes.sql
+-- Indexes backing the queue details view
+
+-- Waiting list: patients of a queue in a given status, in queue order
+CREATE INDEX IF NOT EXISTS idx_patient_queue_status_position ON patients(queue_id, status, queue_position);
+
+-- Served/cancelled history, paged backwards by id
+CREATE INDEX IF NOT EXISTS idx_patient_queue_status_id ON patients(queue_id, status, id);
@@ -0,0 +1,19 @@
+-- V8__Active_Patient_Indexes.sql
+-- Indexes for lookups of the active part of a queue
+
+-- Active patients are a tiny, constantly changing fraction of a table that grows all day.
+-- Indexing only them keeps the index small enough to stay cached however long the history gets.
+CREATE INDEX IF NOT EXISTS idx_patient_active_queue_position
+    ON patients(queue_id, queue_position)
+    WHERE status IN ('WAITING', 'NOTIFIED', 'SERVING');
+
+-- Patients being served in a queue: one per counter, or one at the single desk of a queue
+-- without counters. Not unique, the dispatch row locks keep each desk to one patient
+CREATE INDEX IF NOT EXISTS idx_patient_serving_queue
+    ON patients(queue_id)
+    WHERE status = 'SERVING';
+
+-- Superseded by the composite indexes of V7: queue_id is their leading column,
+-- and status alone is too unselective to be worth maintaining
+DROP INDEX IF EXISTS idx_patient_queue;
+DROP INDEX IF EXISTS idx_patient_status;
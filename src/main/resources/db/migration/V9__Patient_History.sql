@@ -0,0 +1,46 @@
+-- V9__Patient_History.sql
+-- Archive for finished (SERVED/CANCELLED) patients, range partitioned by month of joined_at.
+-- PatientArchiver moves rows here from patients and creates upcoming partitions ahead of time.
+
+CREATE TABLE IF NOT EXISTS patient_history (
+    id BIGINT NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    phone_number VARCHAR(20),
+    email VARCHAR(255),
+    -- No foreign key: history outlives the queues it belonged to
+    queue_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    queue_position INTEGER,
+    joined_at TIMESTAMP NOT NULL,
+    served_at TIMESTAMP,
+    notified_at TIMESTAMP,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, joined_at)
+) PARTITION BY RANGE (joined_at);
+
+-- Catches rows older than the first monthly partition
+CREATE TABLE IF NOT EXISTS patient_history_default PARTITION OF patient_history DEFAULT;
+
+-- Partitions for the current and the next month
+DO $$
+DECLARE
+  month_start DATE;
+BEGIN
+  FOR i IN 0..1 LOOP
+    month_start := (date_trunc('month', CURRENT_DATE) + make_interval(months => i))::DATE;
+    EXECUTE format(
+      'CREATE TABLE IF NOT EXISTS %I PARTITION OF patient_history FOR VALUES FROM (%L) TO (%L)',
+      'patient_history_' || to_char(month_start, 'YYYY_MM'),
+      month_start,
+      (month_start + INTERVAL '1 month')::DATE);
+  END LOOP;
+END $$;
+
+-- History reads mirror the live served/cancelled pages: per queue and status, newest first
+CREATE INDEX IF NOT EXISTS idx_patient_history_queue_status_id ON patient_history(queue_id, status, id);
+CREATE INDEX IF NOT EXISTS idx_patient_history_id ON patient_history(id);
+
+-- Finding archivable rows in the live table
+CREATE INDEX IF NOT EXISTS idx_patient_finished_joined_at
+    ON patients(joined_at)
+    WHERE status IN ('SERVED', 'CANCELLED');
@@ -0,0 +1,81 @@
+package com.hospital.queue.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactFrameInterceptorTest {
+
+    private final CompactFrameInterceptor interceptor = new CompactFrameInterceptor();
+
+    @Test
+    void preSend_ForSessionOptedIn_ShouldSendCborBinaryFrames() throws Exception {
+        connect("s1", handshake("encoding=cbor"));
+        byte[] json = "{\"queueId\":1,\"fromVersion\":4,\"toVersion\":5}".getBytes(StandardCharsets.UTF_8);
+
+        Message<?> sent = interceptor.preSend(message("s1", json), null);
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(sent);
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, accessor.getContentType());
+        assertEquals("cbor", accessor.getFirstNativeHeader("payload-encoding"));
+        assertEquals("/topic/queue/1", accessor.getDestination());
+        JsonNode decoded = new ObjectMapper(new CBORFactory()).readTree((byte[]) sent.getPayload());
+        assertEquals(new ObjectMapper().readTree(json), decoded);
+    }
+
+    @Test
+    void preSend_ForOtherSessions_ShouldLeaveJsonUntouched() {
+        connect("s1", handshake(null));
+        Message<?> message = message("s1", "{\"queueId\":1}".getBytes(StandardCharsets.UTF_8));
+
+        assertSame(message, interceptor.preSend(message, null));
+    }
+
+    @Test
+    void preSend_AfterDisconnect_ShouldForgetSession() {
+        connect("s1", handshake("encoding=cbor"));
+        SimpMessageHeaderAccessor disconnect = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        disconnect.setSessionId("s1");
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], disconnect.getMessageHeaders()), null);
+        Message<?> message = message("s1", "{\"queueId\":1}".getBytes(StandardCharsets.UTF_8));
+
+        assertSame(message, interceptor.preSend(message, null));
+    }
+
+    private Map<String, Object> handshake(String query) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws-native");
+        request.setQueryString(query);
+        Map<String, Object> attributes = new HashMap<>();
+        assertTrue(interceptor.beforeHandshake(new ServletServerHttpRequest(request), null, null, attributes));
+        return attributes;
+    }
+
+    private void connect(String sessionId, Map<String, Object> attributes) {
+        SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        connect.setSessionId(sessionId);
+        connect.setSessionAttributes(attributes);
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()), null);
+    }
+
+    private Message<?> message(String sessionId, byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/queue/1");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,81 @@
+package com.hospital.queue.config;
+
+import com.hospital.queue.service.PatientSessionTokenService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PatientSessionInterceptorTest {
+
+    @Mock
+    private PatientSessionTokenService sessionTokens;
+
+    @InjectMocks
+    private PatientSessionInterceptor interceptor;
+
+    @Test
+    void preSend_ConnectWithValidToken_ShouldAuthenticateAsPatient() {
+        when(sessionTokens.verify("valid")).thenReturn(42L);
+        StompHeaderAccessor accessor = connect("valid");
+
+        interceptor.preSend(message(accessor), null);
+
+        assertEquals("42", accessor.getUser().getName());
+    }
+
+    @Test
+    void preSend_ConnectWithInvalidToken_ShouldBeRefused() {
+        when(sessionTokens.verify("forged")).thenReturn(null);
+
+        assertThrows(MessagingException.class, () -> interceptor.preSend(message(connect("forged")), null));
+    }
+
+    @Test
+    void preSend_ConnectWithoutToken_ShouldStayAnonymous() {
+        StompHeaderAccessor accessor = connect(null);
+
+        interceptor.preSend(message(accessor), null);
+
+        assertNull(accessor.getUser());
+        verifyNoInteractions(sessionTokens);
+    }
+
+    @Test
+    void preSend_SubscribeToResolvedQueue_ShouldBeRefused() {
+        assertThrows(MessagingException.class,
+                () -> interceptor.preSend(message(subscribe("/queue/notifications-user1")), null));
+        assertNotNull(interceptor.preSend(message(subscribe("/user/queue/notifications")), null));
+        assertNotNull(interceptor.preSend(message(subscribe("/topic/queue/1")), null));
+    }
+
+    private StompHeaderAccessor connect(String token) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        if (token != null) {
+            accessor.setNativeHeader(PatientSessionInterceptor.TOKEN_HEADER, token);
+        }
+        return accessor;
+    }
+
+    private StompHeaderAccessor subscribe(String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        return accessor;
+    }
+
+    // Keeps the accessor mutable, as the STOMP handler does for inbound frames
+    private Message<byte[]> message(StompHeaderAccessor accessor) {
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,86 @@
+package com.hospital.queue.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SlowConsumerMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WebSocketHandler handler = mock(WebSocketHandler.class);
+    private final WebSocketSession session = mock(WebSocketSession.class);
+
+    @Test
+    void preSend_ShouldTrackQueueDepthUntilMessagesAreWritten() throws Exception {
+        SlowConsumerMonitor monitor = new SlowConsumerMonitor(meterRegistry, 3, "evict");
+        WebSocketSession tracked = connect(monitor);
+
+        assertNotNull(monitor.preSend(message(), null));
+        assertNotNull(monitor.preSend(message(), null));
+        assertEquals(2, monitor.maxSessionQueueDepth());
+
+        tracked.sendMessage(new TextMessage("MESSAGE"));
+
+        assertEquals(1, monitor.maxSessionQueueDepth());
+        verify(session).sendMessage(any());
+        assertEquals(2, meterRegistry.summary("websocket.session.queue.depth").count());
+    }
+
+    @Test
+    void preSend_WhenSessionFallsBehind_ShouldEvictIt() throws Exception {
+        SlowConsumerMonitor monitor = new SlowConsumerMonitor(meterRegistry, 2, "evict");
+        connect(monitor);
+        monitor.preSend(message(), null);
+        monitor.preSend(message(), null);
+        assertEquals(1, monitor.slowSessions());
+
+        assertNull(monitor.preSend(message(), null));
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1.0, meterRegistry.counter("websocket.sessions.evicted").count());
+        assertEquals(0, monitor.slowSessions());
+    }
+
+    @Test
+    void preSend_WithDropPolicy_ShouldSkipMessagesButKeepSession() throws Exception {
+        SlowConsumerMonitor monitor = new SlowConsumerMonitor(meterRegistry, 1, "drop");
+        WebSocketSession tracked = connect(monitor);
+        monitor.preSend(message(), null);
+
+        assertNull(monitor.preSend(message(), null));
+        tracked.sendMessage(new TextMessage("MESSAGE"));
+        assertNotNull(monitor.preSend(message(), null));
+
+        verify(session, never()).close(any());
+        assertEquals(1.0, meterRegistry.counter("websocket.messages.dropped").count());
+    }
+
+    // Opens the session through the decorated handler and returns the session the handler was given
+    private WebSocketSession connect(SlowConsumerMonitor monitor) throws Exception {
+        when(session.getId()).thenReturn("s1");
+        monitor.decorate(handler).afterConnectionEstablished(session);
+
+        ArgumentCaptor<WebSocketSession> tracked = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(handler).afterConnectionEstablished(tracked.capture());
+        return tracked.getValue();
+    }
+
+    private Message<?> message() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("s1");
+        accessor.setDestination("/topic/queue/1");
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -1,9 +1,12 @@
 package com.hospital.queue.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.queue.dto.BulkRegistrationDTO;
 import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.PatientMoveDTO;
 import com.hospital.queue.dto.PatientStatusUpdateDTO;
 import com.hospital.queue.model.Patient;
+import com.hospital.queue.service.PatientOrderService;
 import com.hospital.queue.service.PatientService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,18 +15,29 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(PatientController.class)
@@ -35,6 +49,9 @@ public class PatientControllerTest {
     @MockBean
     private PatientService patientService;
 
+    @MockBean
+    private PatientOrderService patientOrderService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -71,7 +88,7 @@ public class PatientControllerTest {
 
     @Test
     void getAllPatients_ShouldReturnListOfPatients() throws Exception {
-        when(patientService.getAllPatients()).thenReturn(patientDTOList);
+        when(patientService.getPatients(null, PatientService.DEFAULT_PAGE_SIZE, false)).thenReturn(patientDTOList);
 
         mockMvc.perform(get("/api/patients")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -83,6 +100,39 @@ public class PatientControllerTest {
                 .andExpect(jsonPath("$[1].name", is("Jane Smith")));
     }
 
+    @Test
+    void getAllPatients_WithCursor_ShouldPassItToService() throws Exception {
+        when(patientService.getPatients(1L, 20, true)).thenReturn(Arrays.asList(patientDTOList.get(1)));
+
+        mockMvc.perform(get("/api/patients?afterId=1&limit=20&includeHistory=true")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+    }
+
+    @Test
+    void exportPatients_ShouldStreamOnePatientPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<PatientDTO> consumer = invocation.getArgument(1);
+            patientDTOList.forEach(consumer);
+            return null;
+        }).when(patientService).exportPatients(eq(false), any());
+
+        MvcResult result = mockMvc.perform(get("/api/patients/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("John Doe", objectMapper.readValue(lines[0], PatientDTO.class).getName());
+        assertEquals("Jane Smith", objectMapper.readValue(lines[1], PatientDTO.class).getName());
+    }
+
     @Test
     void getPatientById_ShouldReturnPatient() throws Exception {
         when(patientService.getPatientById(1L)).thenReturn(patientDTO);
@@ -114,6 +164,35 @@ public class PatientControllerTest {
                 .andExpect(jsonPath("$.name", is("John Doe")));
     }
 
+    @Test
+    void registerPatients_ShouldReturnRegisteredPatients() throws Exception {
+        PatientDTO first = new PatientDTO();
+        first.setName("First Patient");
+        first.setQueueId(1L);
+        PatientDTO second = new PatientDTO();
+        second.setName("Second Patient");
+        second.setQrCodeId("abc123");
+
+        when(patientService.registerPatients(anyList())).thenReturn(patientDTOList);
+
+        mockMvc.perform(post("/api/patients/register/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkRegistrationDTO(Arrays.asList(first, second)))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].queuePosition", is(2)));
+    }
+
+    @Test
+    void registerPatients_WithoutPatients_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/api/patients/register/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkRegistrationDTO(Collections.emptyList()))))
+                .andExpect(status().isBadRequest());
+
+        verify(patientService, never()).registerPatients(anyList());
+    }
+
     @Test
     void updatePatientStatus_ShouldReturnUpdatedPatient() throws Exception {
         PatientStatusUpdateDTO statusUpdateDTO = new PatientStatusUpdateDTO();
@@ -141,6 +220,17 @@ public class PatientControllerTest {
                 .andExpect(jsonPath("$.status", is("SERVING")));
     }
     
+    @Test
+    void movePatient_ShouldReturnMovedPatient() throws Exception {
+        when(patientOrderService.movePatient(eq(1L), any(PatientMoveDTO.class))).thenReturn(patientDTO);
+
+        mockMvc.perform(post("/api/patients/1/move")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new PatientMoveDTO(2L, null))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)));
+    }
+
     @Test
     void getPatientById_WithStringId_ShouldHandleTypeConversion() throws Exception {
         // This test verifies that string IDs are properly converted to Long
@@ -162,7 +252,8 @@ public class PatientControllerTest {
         updatedDTO.setId(1L);
         updatedDTO.setStatus(Patient.PatientStatus.SERVING);
 
-        when(patientService.updatePatientStatus(1L, statusUpdateDTO)).thenReturn(updatedDTO);
+        // The request body is deserialized into a new DTO, so only the converted ID can be matched exactly
+        when(patientService.updatePatientStatus(eq(1L), any(PatientStatusUpdateDTO.class))).thenReturn(updatedDTO);
 
         mockMvc.perform(patch("/api/patients/1/status")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -6,6 +6,7 @@ import com.hospital.queue.dto.QueueDetailsDTO;
 import com.hospital.queue.model.Department;
 import com.hospital.queue.model.Patient;
 import com.hospital.queue.model.Queue;
+import com.hospital.queue.service.QRCodeService;
 import com.hospital.queue.service.QueueService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +19,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
@@ -106,7 +108,7 @@ public class QueueControllerTest {
 
     @Test
     void getAllQueues_ShouldReturnListOfQueues() throws Exception {
-        when(queueService.getAllQueues()).thenReturn(queueDTOList);
+        when(queueService.getQueues(null, QueueService.DEFAULT_PAGE_SIZE)).thenReturn(queueDTOList);
 
         mockMvc.perform(get("/api/queues")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -133,7 +135,8 @@ public class QueueControllerTest {
 
     @Test
     void getQueueDetails_ShouldReturnQueueDetails() throws Exception {
-        when(queueService.getQueueDetails(1L)).thenReturn(queueDetailsDTO);
+        when(queueService.getQueueDetails(1L, false, null, null, null, QueueService.DEFAULT_HISTORY_LIMIT, false))
+                .thenReturn(queueDetailsDTO);
 
         mockMvc.perform(get("/api/queues/1")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -147,6 +150,48 @@ public class QueueControllerTest {
                 .andExpect(jsonPath("$.servedPatients", hasSize(1)));
     }
 
+    @Test
+    void getQueueDetails_WithStatusFilterAndCursor_ShouldPassThemToService() throws Exception {
+        when(queueService.getQueueDetails(1L, false,
+                EnumSet.of(Patient.PatientStatus.WAITING, Patient.PatientStatus.SERVED), 10L, null, 20, false))
+                .thenReturn(queueDetailsDTO);
+
+        mockMvc.perform(get("/api/queues/1?status=WAITING&status=SERVED&servedBefore=10&historyLimit=20")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)));
+    }
+
+    @Test
+    void getQueueQRCode_ShouldReturnPngWithETag() throws Exception {
+        byte[] png = new byte[] {1, 2, 3};
+        when(queueService.getQueueQRCode(1L, 250, 250)).thenReturn(new QRCodeService.QRCodeImage(png, "\"abc\""));
+
+        mockMvc.perform(get("/api/queues/1/qr-code.png"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(content().bytes(png))
+                .andExpect(header().string("ETag", "\"abc\""));
+
+        mockMvc.perform(get("/api/queues/1/qr-code.png")
+                .header("If-None-Match", "\"abc\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getQueueQRCode_ShouldCompareEachTagOfIfNoneMatch() throws Exception {
+        byte[] png = new byte[] {1, 2, 3};
+        when(queueService.getQueueQRCode(1L, 250, 250)).thenReturn(new QRCodeService.QRCodeImage(png, "\"abc\""));
+
+        mockMvc.perform(get("/api/queues/1/qr-code.png")
+                .header("If-None-Match", "\"xabcx\", \"abcd\""))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/queues/1/qr-code.png")
+                .header("If-None-Match", "\"other\", W/\"abc\""))
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     void createQueue_ShouldReturnCreatedQueue() throws Exception {
         QueueDTO inputDTO = new QueueDTO();
@@ -199,7 +244,8 @@ public class QueueControllerTest {
     @Test
     void getQueueDetails_WithStringId_ShouldHandleTypeConversion() throws Exception {
         // This test verifies that string IDs are properly converted to Long
-        when(queueService.getQueueDetails(1L)).thenReturn(queueDetailsDTO);
+        when(queueService.getQueueDetails(1L, false, null, null, null, QueueService.DEFAULT_HISTORY_LIMIT, false))
+                .thenReturn(queueDetailsDTO);
 
         mockMvc.perform(get("/api/queues/1")
                 .contentType(MediaType.APPLICATION_JSON))
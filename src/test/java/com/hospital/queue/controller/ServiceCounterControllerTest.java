@@ -0,0 +1,99 @@
+package com.hospital.queue.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.ServiceCounterDTO;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.service.PatientService;
+import com.hospital.queue.service.ServiceCounterService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ServiceCounterController.class)
+public class ServiceCounterControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ServiceCounterService counterService;
+
+    @MockBean
+    private PatientService patientService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void getCounters_ShouldReturnCountersWithServingPatients() throws Exception {
+        when(counterService.getCounters(1L)).thenReturn(Arrays.asList(
+                new ServiceCounterDTO(3L, "Desk 1", 1L, true, 10L, "John Doe"),
+                new ServiceCounterDTO(4L, "Desk 2", 1L, true, null, null)));
+
+        mockMvc.perform(get("/api/queues/1/counters"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].servingPatientId", is(10)))
+                .andExpect(jsonPath("$[1].name", is("Desk 2")));
+    }
+
+    @Test
+    void createCounter_WithoutName_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/api/queues/1/counters")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new ServiceCounterDTO())))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createCounter_ShouldReturnCreatedCounter() throws Exception {
+        ServiceCounterDTO counter = new ServiceCounterDTO();
+        counter.setName("Desk 1");
+        when(counterService.createCounter(eq(1L), any(ServiceCounterDTO.class)))
+                .thenReturn(new ServiceCounterDTO(3L, "Desk 1", 1L, true, null, null));
+
+        mockMvc.perform(post("/api/queues/1/counters")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(counter)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(3)))
+                .andExpect(jsonPath("$.open", is(true)));
+    }
+
+    @Test
+    void callNextPatient_ShouldReturnPatientCalledToCounter() throws Exception {
+        PatientDTO patient = new PatientDTO();
+        patient.setId(10L);
+        patient.setStatus(Patient.PatientStatus.SERVING);
+        patient.setCounterId(3L);
+        when(patientService.callNextPatient(1L, 3L)).thenReturn(patient);
+
+        mockMvc.perform(post("/api/queues/1/counters/3/call-next"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(10)))
+                .andExpect(jsonPath("$.counterId", is(3)));
+    }
+
+    @Test
+    void callNextPatient_WhenNobodyCanBeCalled_ShouldReturnNoContent() throws Exception {
+        when(patientService.callNextPatient(1L, 3L)).thenReturn(null);
+
+        mockMvc.perform(post("/api/queues/1/counters/3/call-next"))
+                .andExpect(status().isNoContent());
+    }
+}
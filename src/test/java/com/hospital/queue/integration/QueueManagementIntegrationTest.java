@@ -1,15 +1,18 @@
 package com.hospital.queue.integration;
 
 import com.hospital.queue.dto.DepartmentDTO;
+import com.hospital.queue.dto.HospitalDTO;
 import com.hospital.queue.dto.PatientDTO;
 import com.hospital.queue.dto.PatientStatusUpdateDTO;
 import com.hospital.queue.dto.QueueDTO;
 import com.hospital.queue.dto.QueueDetailsDTO;
+import com.hospital.queue.exception.ResourceNotFoundException;
 import com.hospital.queue.model.Patient;
 import com.hospital.queue.repository.DepartmentRepository;
 import com.hospital.queue.repository.PatientRepository;
 import com.hospital.queue.repository.QueueRepository;
 import com.hospital.queue.service.DepartmentService;
+import com.hospital.queue.service.HospitalService;
 import com.hospital.queue.service.PatientService;
 import com.hospital.queue.service.QueueService;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,11 +24,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+// A real servlet container for the WebSocket endpoint; push notifications need no Firebase credentials
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "firebase.enabled=false")
 @ActiveProfiles("test")
 @Transactional
 public class QueueManagementIntegrationTest {
 
+    @Autowired
+    private HospitalService hospitalService;
+
     @Autowired
     private DepartmentService departmentService;
 
@@ -54,10 +61,16 @@ public class QueueManagementIntegrationTest {
         queueRepository.deleteAll();
         departmentRepository.deleteAll();
 
+        // Create test hospital
+        HospitalDTO hospitalDTO = new HospitalDTO();
+        hospitalDTO.setName("Test Hospital");
+        hospitalDTO = hospitalService.createHospital(hospitalDTO);
+
         // Create test department
         departmentDTO = new DepartmentDTO();
         departmentDTO.setName("Test Department");
         departmentDTO.setDescription("Test Department Description");
+        departmentDTO.setHospitalId(hospitalDTO.getId());
         departmentDTO = departmentService.createDepartment(departmentDTO);
 
         // Create test queue
@@ -76,7 +89,7 @@ public class QueueManagementIntegrationTest {
         assertNotNull(queueDTO.getQrCodeId());
 
         // Step 2: Get queue details
-        QueueDetailsDTO queueDetails = queueService.getQueueDetails(queueDTO.getId());
+        QueueDetailsDTO queueDetails = queueService.getQueueDetails(queueDTO.getId(), true);
         assertEquals(queueDTO.getName(), queueDetails.getName());
         assertEquals(departmentDTO.getName(), queueDetails.getDepartmentName());
         assertNotNull(queueDetails.getQrCodeImage());
@@ -194,7 +207,9 @@ public class QueueManagementIntegrationTest {
             // This tests boundary conditions for ID conversion
             Long veryLargeId = Long.MAX_VALUE;
             queueService.getQueueDetails(veryLargeId);
-            // No exception should be thrown, but the queue won't be found
+            fail("Should have thrown exception for a queue that does not exist");
+        } catch (ResourceNotFoundException e) {
+            // Expected: the ID converts fine, but the queue won't be found
         } catch (Exception e) {
             fail("Should not throw exception for valid Long ID: " + e.getMessage());
         }
@@ -0,0 +1,211 @@
+package com.hospital.queue.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.queue.dto.CacheInvalidationDTO;
+import com.hospital.queue.dto.NotificationDTO;
+import com.hospital.queue.model.Patient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClusterMessageBackplaneTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final InMemoryBackplaneChannel channel = new InMemoryBackplaneChannel();
+    private final List<ClusterMessageBackplane> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ClusterMessageBackplane::stop);
+    }
+
+    @Test
+    void publish_ShouldReachSubscribersOfEveryNodeOnce() throws Exception {
+        Node publisher = node(true);
+        Node other = node(true);
+        NotificationDTO notification = new NotificationDTO(1L, "John Doe", 2L, "General", "OPD",
+                Patient.PatientStatus.NOTIFIED, 3, LocalDateTime.of(2024, 1, 1, 9, 30));
+
+        publisher.backplane.publish("/user/1/queue/notifications", notification);
+
+        awaitMessages(other, 1);
+        assertEquals(1, publisher.sent.size());
+        assertEquals("/user/1/queue/notifications", destination(other.sent.get(0)));
+        assertEquals(json(publisher.sent.get(0)), json(other.sent.get(0)));
+        assertEquals("NOTIFIED", json(other.sent.get(0)).get("status").asText());
+    }
+
+    @Test
+    void publish_ShouldPackBurstIntoOneNotification() throws Exception {
+        // Messages published before the sender starts end up in a single batch
+        Node publisher = node(false);
+        Node other = node(true);
+        for (int i = 0; i < 50; i++) {
+            publisher.backplane.publish("/topic/queue/1", Collections.singletonMap("event", i));
+        }
+
+        publisher.backplane.start();
+
+        awaitMessages(other, 50);
+        assertEquals(1, channel.sends.size());
+        assertEquals(1, channel.sends.get(0).size());
+        assertEquals(49, json(other.sent.get(49)).get("event").asInt());
+    }
+
+    @Test
+    void publish_WithPayloadOverNotificationLimit_ShouldBeCompressed() throws Exception {
+        Node publisher = node(true);
+        Node other = node(true);
+        String text = String.join("", Collections.nCopies(2000, "queue update "));
+
+        publisher.backplane.publish("/topic/queue/1", Collections.singletonMap("text", text));
+
+        awaitMessages(other, 1);
+        assertTrue(channel.sends.get(0).get(0).length() <= BackplaneChannel.MAX_PAYLOAD_BYTES);
+        assertEquals(text, json(other.sent.get(0)).get("text").asText());
+    }
+
+    @Test
+    void invalidate_ShouldReachOtherNodesAsEventOnly() throws Exception {
+        Node publisher = node(true);
+        Node other = node(true);
+
+        publisher.backplane.invalidate(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.QUEUE_ENGINE, 5L));
+
+        awaitEvents(other, 1);
+        CacheInvalidationDTO invalidation = (CacheInvalidationDTO) other.events.get(0);
+        assertEquals(CacheInvalidationDTO.Cache.QUEUE_ENGINE, invalidation.getCache());
+        assertEquals(5L, invalidation.getId());
+        assertTrue(publisher.events.isEmpty());
+        assertTrue(other.sent.isEmpty());
+    }
+
+    @Test
+    void publish_BehindBrokerRelay_ShouldOnlySendInvalidations() throws Exception {
+        // The relay already delivers to every node's subscribers
+        Node publisher = node(true, "relay");
+        Node other = node(true, "relay");
+
+        publisher.backplane.publish("/topic/queue/1", Collections.singletonMap("event", 1));
+        publisher.backplane.invalidate(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.DEVICE_TOKENS, 2L));
+
+        awaitEvents(other, 1);
+        assertEquals(1, publisher.sent.size());
+        assertTrue(other.sent.isEmpty());
+        assertEquals(1, channel.sends.size());
+    }
+
+    @Test
+    void invalidate_WithFullQueue_ShouldTellOtherNodesToDropEveryCache() throws Exception {
+        Node publisher = node(false, "simple", 1);
+        Node other = node(true);
+        publisher.backplane.invalidate(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.QUEUE_ENGINE, 5L));
+        // Dropped: the queue only has room for one message
+        publisher.backplane.invalidate(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.DEVICE_TOKENS, 6L));
+
+        publisher.backplane.start();
+
+        awaitEvents(other, 1 + CacheInvalidationDTO.Cache.values().length);
+        assertEquals(5L, ((CacheInvalidationDTO) other.events.get(0)).getId());
+        for (Object event : other.events.subList(1, other.events.size())) {
+            assertNull(((CacheInvalidationDTO) event).getId());
+        }
+    }
+
+    private Node node(boolean started) {
+        return node(started, "simple");
+    }
+
+    private Node node(boolean started, String brokerMode) {
+        return node(started, brokerMode, 1000);
+    }
+
+    private Node node(boolean started, String brokerMode, int queueCapacity) {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        List<Message<?>> sent = new CopyOnWriteArrayList<>();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+        messagingTemplate.setMessageConverter(converter);
+
+        List<Object> events = new CopyOnWriteArrayList<>();
+        ClusterMessageBackplane backplane = new ClusterMessageBackplane(channel, messagingTemplate, objectMapper,
+                events::add, new SimpleMeterRegistry(), brokerMode, queueCapacity, 100);
+        nodes.add(backplane);
+        if (started) {
+            backplane.start();
+        }
+        return new Node(backplane, sent, events);
+    }
+
+    private void awaitMessages(Node node, int count) throws InterruptedException {
+        for (int i = 0; i < 200 && node.sent.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, node.sent.size());
+    }
+
+    private void awaitEvents(Node node, int count) throws InterruptedException {
+        for (int i = 0; i < 200 && node.events.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, node.events.size());
+    }
+
+    private String destination(Message<?> message) {
+        return SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+    }
+
+    private JsonNode json(Message<?> message) throws Exception {
+        return objectMapper.readTree((byte[]) message.getPayload());
+    }
+
+    private static final class Node {
+        private final ClusterMessageBackplane backplane;
+        private final List<Message<?>> sent;
+        private final List<Object> events;
+
+        private Node(ClusterMessageBackplane backplane, List<Message<?>> sent, List<Object> events) {
+            this.backplane = backplane;
+            this.sent = sent;
+            this.events = events;
+        }
+    }
+
+    // Stands in for a Postgres channel: every send reaches every listening node, the sender included
+    private static class InMemoryBackplaneChannel implements BackplaneChannel {
+        private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+        private final List<List<String>> sends = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(List<String> payloads) {
+            sends.add(payloads);
+            for (String payload : payloads) {
+                listeners.forEach(listener -> listener.accept(payload));
+            }
+        }
+
+        @Override
+        public void listen(Consumer<String> listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void close() {
+            listeners.clear();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.CacheInvalidationDTO;
+import com.hospital.queue.model.PatientDevice;
+import com.hospital.queue.repository.PatientDeviceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DeviceTokenCacheTest {
+
+    @Mock
+    private PatientDeviceRepository patientDeviceRepository;
+
+    @Mock
+    private MessageBackplane backplane;
+
+    private final MutableClock clock = new MutableClock();
+    private DeviceTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DeviceTokenCache(patientDeviceRepository, backplane, 100, Duration.ofMinutes(1), clock);
+    }
+
+    @Test
+    void getTokens_ShouldLoadMissesInOneQueryAndServeHitsFromMemory() {
+        when(patientDeviceRepository.findByPatientIdIn(anyCollection()))
+                .thenReturn(Arrays.asList(device(1L, "token-a"), device(1L, "token-b")));
+
+        Map<Long, List<String>> tokens = cache.getTokens(Arrays.asList(1L, 2L));
+        assertEquals(Arrays.asList("token-a", "token-b"), tokens.get(1L));
+        assertTrue(tokens.get(2L).isEmpty());
+
+        // Both patients, including the one without devices, are now cached
+        cache.getTokens(Arrays.asList(1L, 2L));
+        verify(patientDeviceRepository, times(1)).findByPatientIdIn(anyCollection());
+    }
+
+    @Test
+    void invalidate_ShouldReloadOnNextRead() {
+        when(patientDeviceRepository.findByPatientIdIn(anyCollection()))
+                .thenReturn(Collections.singletonList(device(1L, "token-a")))
+                .thenReturn(Arrays.asList(device(1L, "token-a"), device(1L, "token-b")));
+
+        assertEquals(1, cache.getTokens(1L).size());
+        cache.invalidate(1L);
+
+        assertEquals(2, cache.getTokens(1L).size());
+        verify(backplane).invalidate(argThat(invalidation -> invalidation.getId().equals(1L)
+                && invalidation.getCache() == CacheInvalidationDTO.Cache.DEVICE_TOKENS));
+    }
+
+    @Test
+    void invalidateAll_ShouldReloadEveryPatientAndTellOtherNodes() {
+        when(patientDeviceRepository.findByPatientIdIn(anyCollection()))
+                .thenReturn(Collections.singletonList(device(1L, "token-a")));
+
+        cache.getTokens(1L);
+        cache.invalidateAll();
+        cache.getTokens(1L);
+
+        verify(patientDeviceRepository, times(2)).findByPatientIdIn(anyCollection());
+        verify(backplane).invalidate(argThat(invalidation -> invalidation.getId() == null
+                && invalidation.getCache() == CacheInvalidationDTO.Cache.DEVICE_TOKENS));
+    }
+
+    @Test
+    void onCacheInvalidation_FromOtherNode_ShouldReloadOnNextRead() {
+        when(patientDeviceRepository.findByPatientIdIn(anyCollection()))
+                .thenReturn(Collections.singletonList(device(1L, "token-a")));
+        cache.getTokens(1L);
+
+        cache.onCacheInvalidation(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.DEVICE_TOKENS, 1L));
+        cache.getTokens(1L);
+
+        verify(patientDeviceRepository, times(2)).findByPatientIdIn(anyCollection());
+        verifyNoInteractions(backplane);
+    }
+
+    @Test
+    void getTokens_AfterTimeToLive_ShouldReload() {
+        // Another node may have registered a token without invalidating this cache
+        when(patientDeviceRepository.findByPatientIdIn(anyCollection()))
+                .thenReturn(Collections.singletonList(device(1L, "token-a")))
+                .thenReturn(Arrays.asList(device(1L, "token-a"), device(1L, "token-b")));
+
+        assertEquals(1, cache.getTokens(1L).size());
+        clock.advance(Duration.ofSeconds(59));
+        assertEquals(1, cache.getTokens(1L).size());
+        clock.advance(Duration.ofSeconds(1));
+
+        assertEquals(2, cache.getTokens(1L).size());
+        verify(patientDeviceRepository, times(2)).findByPatientIdIn(anyCollection());
+    }
+
+    @Test
+    void removeToken_ShouldDropOnlyThatToken() {
+        when(patientDeviceRepository.findByPatientIdIn(anyCollection()))
+                .thenReturn(Arrays.asList(device(1L, "token-a"), device(1L, "token-b")));
+        cache.getTokens(1L);
+
+        cache.removeToken(1L, "token-a");
+
+        assertEquals(Collections.singletonList("token-b"), cache.getTokens(1L));
+        verify(patientDeviceRepository, times(1)).findByPatientIdIn(anyCollection());
+    }
+
+    private PatientDevice device(Long patientId, String token) {
+        PatientDevice device = new PatientDevice();
+        device.setPatientId(patientId);
+        device.setDeviceToken(token);
+        return device;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T09:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
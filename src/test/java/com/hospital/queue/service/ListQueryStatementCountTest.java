@@ -0,0 +1,137 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.model.Department;
+import com.hospital.queue.model.Hospital;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.Queue;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * List endpoints must issue the same number of SQL statements however many rows they return.
+ * Each list is read once with a small and once with a larger data set.
+ */
+@DataJpaTest(properties = {
+        // The Postgres dialect from application.properties would emit sequence DDL that H2 rejects
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({PatientService.class, QueueService.class, DepartmentService.class, HospitalService.class})
+public class ListQueryStatementCountTest {
+
+    @MockBean
+    private QRCodeService qrCodeService;
+
+    @MockBean
+    private NotificationService notificationService;
+
+    @MockBean
+    private NotificationOutboxService notificationOutboxService;
+
+    @MockBean
+    private QueueEngine queueEngine;
+
+    @MockBean
+    private QueuePositionAllocator queuePositionAllocator;
+
+    @MockBean
+    private PatientSessionTokenService patientSessionTokenService;
+
+    @MockBean
+    private DeviceTokenCache deviceTokenCache;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private QueueService queueService;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private HospitalService hospitalService;
+
+    private Statistics statistics;
+    private Hospital hospital;
+    private Department department;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void listEndpoints_ShouldRunConstantNumberOfStatements() {
+        createData(1);
+        assertListStatementCounts();
+
+        createData(10);
+        assertListStatementCounts();
+    }
+
+    private void assertListStatementCounts() {
+        assertEquals(1, statementsFor(() -> patientService.getAllPatients()));
+        assertEquals(1, statementsFor(() -> patientService.getPatients(null, PatientService.DEFAULT_PAGE_SIZE, false)));
+        assertEquals(1, statementsFor(() -> queueService.getAllQueues()));
+        assertEquals(1, statementsFor(() -> queueService.getQueues(null, QueueService.DEFAULT_PAGE_SIZE)));
+        assertEquals(1, statementsFor(() -> queueService.getQueuesByDepartment(department.getId())));
+        assertEquals(1, statementsFor(() -> departmentService.getAllDepartments()));
+        // Existence check of the hospital plus the list itself
+        assertEquals(2, statementsFor(() -> departmentService.getDepartmentsByHospitalId(hospital.getId())));
+        assertEquals(1, statementsFor(() -> hospitalService.getAllHospitals()));
+    }
+
+    // Every row starts out detached, so any lazy association touched by a conversion shows up as a statement
+    private long statementsFor(Runnable listCall) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        listCall.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void createData(int count) {
+        for (int i = 0; i < count; i++) {
+            hospital = new Hospital();
+            hospital.setName("Hospital " + i);
+            entityManager.persist(hospital);
+
+            department = new Department();
+            department.setName("Department " + i);
+            department.setHospital(hospital);
+            entityManager.persist(department);
+
+            Queue queue = new Queue();
+            queue.setName("Queue " + i);
+            queue.setQrCodeId(UUID.randomUUID().toString());
+            queue.setDepartment(department);
+            entityManager.persist(queue);
+
+            for (int j = 0; j < 3; j++) {
+                Patient patient = new Patient();
+                patient.setName("Patient " + i + "-" + j);
+                patient.setQueue(queue);
+                patient.setQueuePosition(j + 1);
+                entityManager.persist(patient);
+            }
+        }
+    }
+}
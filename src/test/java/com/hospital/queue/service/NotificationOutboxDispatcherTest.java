@@ -0,0 +1,103 @@
+package com.hospital.queue.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.hospital.queue.dto.NotificationDTO;
+import com.hospital.queue.model.NotificationOutbox;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.repository.NotificationOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationOutboxDispatcherTest {
+
+    @Mock
+    private NotificationOutboxRepository outboxRepository;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private PatientDeviceService patientDeviceService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ObjectMapper objectMapper;
+    private NotificationOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        dispatcher = new NotificationOutboxDispatcher(outboxRepository, notificationService, patientDeviceService,
+                objectMapper, transactionManager, 10, 2, 24);
+    }
+
+    @Test
+    void poll_ShouldSendPendingEntriesAndMarkThemDispatched() throws Exception {
+        NotificationOutbox entry = entry(1L, 5L);
+        when(outboxRepository.lockPendingBatch(10)).thenReturn(Collections.singletonList(entry));
+        when(patientDeviceService.sendStatusNotifications(anyMap())).thenReturn(1);
+
+        dispatcher.poll();
+
+        ArgumentCaptor<NotificationDTO> notification = ArgumentCaptor.forClass(NotificationDTO.class);
+        verify(notificationService).sendNotification(notification.capture());
+        assertEquals(5L, notification.getValue().getPatientId());
+        verify(patientDeviceService).sendStatusNotifications(Collections.singletonMap(5L, "NOTIFIED"));
+        assertNotNull(entry.getDispatchedAt());
+        assertEquals(1, entry.getAttempts());
+        verify(outboxRepository).saveAll(Collections.singletonList(entry));
+    }
+
+    @Test
+    void poll_WithFailingEntry_ShouldKeepItPendingUntilMaxAttempts() throws Exception {
+        NotificationOutbox broken = entry(1L, 5L);
+        broken.setPayload("not json");
+        NotificationOutbox healthy = entry(2L, 6L);
+        when(outboxRepository.lockPendingBatch(10)).thenReturn(Arrays.asList(broken, healthy));
+
+        dispatcher.poll();
+
+        assertNull(broken.getDispatchedAt());
+        assertNotNull(broken.getLastError());
+        assertNotNull(healthy.getDispatchedAt());
+        verify(outboxRepository, times(1)).lockPendingBatch(anyInt());
+        verify(patientDeviceService).sendStatusNotifications(Collections.singletonMap(6L, "NOTIFIED"));
+
+        // Second attempt reaches the limit and the entry is abandoned
+        dispatcher.poll();
+
+        assertEquals(2, broken.getAttempts());
+        assertNotNull(broken.getDispatchedAt());
+    }
+
+    private NotificationOutbox entry(Long id, Long patientId) throws Exception {
+        NotificationDTO notification = new NotificationDTO();
+        notification.setPatientId(patientId);
+        notification.setStatus(Patient.PatientStatus.NOTIFIED);
+        notification.setTimestamp(LocalDateTime.now());
+
+        NotificationOutbox entry = new NotificationOutbox();
+        entry.setId(id);
+        entry.setEventType(NotificationOutbox.EventType.PATIENT_STATUS);
+        entry.setPatientId(patientId);
+        entry.setStatus("NOTIFIED");
+        entry.setPayload(objectMapper.writeValueAsString(notification));
+        return entry;
+    }
+}
@@ -0,0 +1,184 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.PatientMoveDTO;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.Queue;
+import com.hospital.queue.repository.ActivePatientProjection;
+import com.hospital.queue.repository.PatientRepository;
+import com.hospital.queue.repository.QueueRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PatientOrderServiceTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private QueueRepository queueRepository;
+
+    @Mock
+    private PatientService patientService;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private NotificationOutboxService notificationOutbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private QueueEngine queueEngine;
+    private PatientOrderService patientOrderService;
+    private Queue queue;
+
+    @BeforeEach
+    void setUp() {
+        // A real engine, so moves are checked against the order it actually keeps
+        queueEngine = new QueueEngine(patientRepository, mock(MessageBackplane.class));
+        patientOrderService = new PatientOrderService(patientRepository, queueRepository, patientService,
+                notificationService, notificationOutbox, queueEngine, transactionManager, 8);
+
+        queue = new Queue();
+        queue.setId(1L);
+        queue.setNextPosition(4);
+    }
+
+    @Test
+    void movePatient_BeforeAnotherPatient_ShouldOnlyRewriteItsOwnKey() {
+        // Arrange
+        List<Patient> patients = givenWaitingPatients(1024, 2048, 3072);
+        Patient moved = patients.get(2);
+
+        // Act
+        patientOrderService.movePatient(3L, new PatientMoveDTO(2L, null));
+
+        // Assert
+        assertEquals(1536L, moved.getOrderKey());
+        assertEquals(Arrays.asList(1L, 3L, 2L), queueEngine.callablePatientIds(1L, 10));
+        verify(patientRepository).save(moved);
+        verify(patientRepository, never()).saveAll(anyList());
+        verify(notificationService).publishPositionChanged(moved, 1L);
+    }
+
+    @Test
+    void movePatient_AfterLastPatient_ShouldStayAheadOfNextArrival() {
+        List<Patient> patients = givenWaitingPatients(1024, 2048, 3072);
+
+        patientOrderService.movePatient(1L, new PatientMoveDTO(null, 3L));
+
+        assertEquals(3584L, patients.get(0).getOrderKey());
+        assertTrue(patients.get(0).getOrderKey() < Patient.orderKeyFor(queue.getNextPosition()));
+        assertEquals(Arrays.asList(2L, 3L, 1L), queueEngine.callablePatientIds(1L, 10));
+    }
+
+    @Test
+    void movePatient_WithoutRoomBetweenPatients_ShouldRenumberQueueFirst() {
+        // Arrange
+        List<Patient> patients = givenWaitingPatients(1024, 1025, 3072);
+        when(patientRepository.findByQueueIdAndStatusInOrderByOrderKeyAscIdAsc(eq(1L), anyList()))
+                .thenReturn(new ArrayList<>(patients));
+
+        // Act
+        patientOrderService.movePatient(3L, new PatientMoveDTO(2L, null));
+
+        // Assert
+        assertEquals(1024L, patients.get(0).getOrderKey());
+        assertEquals(2048L, patients.get(1).getOrderKey());
+        assertEquals(1536L, patients.get(2).getOrderKey());
+        assertEquals(Arrays.asList(1L, 3L, 2L), queueEngine.callablePatientIds(1L, 10));
+        verify(patientRepository).saveAll(anyList());
+    }
+
+    @Test
+    void movePatientToPosition_ShouldMoveBeforePatientAtThatPlace() {
+        List<Patient> patients = givenWaitingPatients(1024, 2048, 3072);
+
+        patientOrderService.movePatientToPosition(3L, 1);
+
+        assertEquals(0L, patients.get(2).getOrderKey());
+        assertEquals(Arrays.asList(3L, 1L, 2L), queueEngine.callablePatientIds(1L, 10));
+    }
+
+    @Test
+    void movePatient_WithBothNeighbours_ShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> patientOrderService.movePatient(3L, new PatientMoveDTO(1L, 2L)));
+        verify(patientRepository, never()).save(any(Patient.class));
+    }
+
+    @Test
+    void movePatient_WhenServed_ShouldBeRejected() {
+        Patient patient = patient(3L, 3072);
+        patient.setStatus(Patient.PatientStatus.SERVING);
+        when(patientRepository.findById(3L)).thenReturn(Optional.of(patient));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> patientOrderService.movePatient(3L, new PatientMoveDTO(1L, null)));
+        verify(queueRepository, never()).lockById(anyLong());
+    }
+
+    // Waiting patients 1, 2, 3... with the given order keys, known to the engine and the repositories
+    private List<Patient> givenWaitingPatients(long... orderKeys) {
+        List<Patient> patients = new ArrayList<>();
+        List<ActivePatientProjection> projections = new ArrayList<>();
+        for (int i = 0; i < orderKeys.length; i++) {
+            Patient patient = patient(i + 1L, orderKeys[i]);
+            patients.add(patient);
+            projections.add(projection(patient));
+            lenient().when(patientRepository.findById(patient.getId())).thenReturn(Optional.of(patient));
+        }
+        when(patientRepository.findActiveByQueueIdAndStatusIn(eq(1L), anyList())).thenReturn(projections);
+        when(queueRepository.lockById(1L)).thenReturn(Optional.of(queue));
+        return patients;
+    }
+
+    private Patient patient(Long id, long orderKey) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setName("Patient " + id);
+        patient.setQueue(queue);
+        patient.setQueuePosition(id.intValue());
+        patient.setOrderKey(orderKey);
+        return patient;
+    }
+
+    private ActivePatientProjection projection(Patient patient) {
+        return new ActivePatientProjection() {
+            @Override
+            public Long getId() {
+                return patient.getId();
+            }
+
+            @Override
+            public Long getQueueId() {
+                return 1L;
+            }
+
+            @Override
+            public Patient.PatientStatus getStatus() {
+                return patient.getStatus();
+            }
+
+            @Override
+            public Long getOrderKey() {
+                return patient.getOrderKey();
+            }
+        };
+    }
+}
@@ -0,0 +1,314 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.PatientDTO;
+import com.hospital.queue.dto.PatientStatusUpdateDTO;
+import com.hospital.queue.exception.ResourceNotFoundException;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.Queue;
+import com.hospital.queue.model.ServiceCounter;
+import com.hospital.queue.repository.PatientHistoryRepository;
+import com.hospital.queue.repository.PatientRepository;
+import com.hospital.queue.repository.QueueRepository;
+import com.hospital.queue.repository.ServiceCounterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PatientServiceTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private PatientHistoryRepository patientHistoryRepository;
+
+    @Mock
+    private QueueRepository queueRepository;
+
+    @Mock
+    private ServiceCounterRepository counterRepository;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private NotificationOutboxService notificationOutbox;
+
+    @Mock
+    private QueueEngine queueEngine;
+
+    @Mock
+    private QueuePositionAllocator positionAllocator;
+
+    @Mock
+    private PatientSessionTokenService sessionTokens;
+
+    @InjectMocks
+    private PatientService patientService;
+
+    private Queue cardiology;
+    private Queue neurology;
+
+    @BeforeEach
+    void setUp() {
+        cardiology = new Queue();
+        cardiology.setId(1L);
+        cardiology.setName("Cardiology Queue");
+        cardiology.setQrCodeId("cardio-qr");
+
+        neurology = new Queue();
+        neurology.setId(2L);
+        neurology.setName("Neurology Queue");
+        neurology.setQrCodeId("neuro-qr");
+    }
+
+    @Test
+    void registerPatients_ShouldAllocatePositionsOncePerQueue() {
+        // Arrange
+        when(queueRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(cardiology));
+        when(queueRepository.findByQrCodeIdIn(anyCollection())).thenReturn(Collections.singletonList(neurology));
+        when(positionAllocator.allocate(1L, 2)).thenReturn(10);
+        when(positionAllocator.allocate(2L, 1)).thenReturn(4);
+        when(patientRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Patient> patients = invocation.getArgument(0);
+            long id = 100;
+            for (Patient patient : patients) {
+                patient.setId(id++);
+            }
+            return patients;
+        });
+        when(sessionTokens.issue(anyLong())).thenAnswer(invocation -> "token-" + invocation.getArgument(0));
+
+        // Act
+        List<PatientDTO> result = patientService.registerPatients(Arrays.asList(
+                registration("First", 1L, null),
+                registration("Second", null, "neuro-qr"),
+                registration("Third", null, "direct-1")));
+
+        // Assert
+        assertEquals(3, result.size());
+        assertEquals("First", result.get(0).getName());
+        assertEquals(10, result.get(0).getQueuePosition());
+        assertEquals(2L, result.get(1).getQueueId());
+        assertEquals(4, result.get(1).getQueuePosition());
+        assertEquals(1L, result.get(2).getQueueId());
+        assertEquals(11, result.get(2).getQueuePosition());
+        assertEquals("token-101", result.get(1).getSessionToken());
+        verify(patientRepository, times(1)).saveAll(anyList());
+        verify(notificationService, times(3)).publishPatientJoined(any(Patient.class));
+        verify(patientRepository, never()).save(any(Patient.class));
+    }
+
+    @Test
+    void registerPatients_WithUnknownQueue_ShouldRegisterNobody() {
+        // Arrange
+        when(queueRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(cardiology));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> patientService.registerPatients(Arrays.asList(
+                registration("First", 1L, null),
+                registration("Second", 99L, null))));
+        verify(positionAllocator, never()).allocate(anyLong(), anyInt());
+        verify(patientRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void callNextPatient_ShouldServeClaimedPatientAfterLockingTheRow() {
+        // Arrange
+        Patient patient = waitingPatient(5L, 1, Patient.PatientStatus.NOTIFIED);
+        when(queueRepository.lockById(1L)).thenReturn(Optional.of(cardiology));
+        when(queueEngine.claimNext(1L)).thenReturn(5L);
+        when(patientRepository.lockByIdAndStatusIn(eq(5L), anyCollection())).thenReturn(Optional.of(patient));
+
+        // Act
+        PatientDTO result = patientService.callNextPatient(1L);
+
+        // Assert
+        assertEquals(5L, result.getId());
+        assertEquals(Patient.PatientStatus.SERVING, result.getStatus());
+        verify(notificationService).publishStatusChanged(patient, Patient.PatientStatus.NOTIFIED);
+        verify(notificationOutbox).enqueueStatusNotification(patient);
+        verify(patientRepository, never()).lockFirstByQueueIdAndStatusIn(anyLong(), anyCollection());
+    }
+
+    @Test
+    void callNextPatient_WhenClaimedRowIsTaken_ShouldServeNextUnlockedPatient() {
+        // Arrange
+        Patient patient = waitingPatient(6L, 2, Patient.PatientStatus.WAITING);
+        when(queueRepository.lockById(1L)).thenReturn(Optional.of(cardiology));
+        when(queueEngine.claimNext(1L)).thenReturn(5L);
+        when(patientRepository.lockByIdAndStatusIn(eq(5L), anyCollection())).thenReturn(Optional.empty());
+        when(patientRepository.lockFirstByQueueIdAndStatusIn(eq(1L), anyCollection())).thenReturn(Optional.of(patient));
+
+        // Act
+        PatientDTO result = patientService.callNextPatient(1L);
+
+        // Assert
+        assertEquals(6L, result.getId());
+        verify(queueEngine).evict(1L);
+        verify(queueEngine).track(1L, 6L, Patient.PatientStatus.SERVING, Patient.orderKeyFor(2));
+    }
+
+    @Test
+    void callNextPatient_WhenEngineHasNobody_ShouldServeWaitingPatientFromDatabase() {
+        // Arrange: the engine is behind a patient registered on another instance
+        Patient patient = waitingPatient(6L, 1, Patient.PatientStatus.WAITING);
+        when(queueRepository.lockById(1L)).thenReturn(Optional.of(cardiology));
+        when(queueEngine.claimNext(1L)).thenReturn(null);
+        when(patientRepository.lockFirstByQueueIdAndStatusIn(eq(1L), anyCollection())).thenReturn(Optional.of(patient));
+
+        // Act
+        PatientDTO result = patientService.callNextPatient(1L);
+
+        // Assert
+        assertEquals(6L, result.getId());
+        assertEquals(Patient.PatientStatus.SERVING, result.getStatus());
+        verify(queueEngine).evict(1L);
+    }
+
+    @Test
+    void callNextPatient_WhenNobodyIsWaiting_ShouldReturnNull() {
+        when(queueRepository.lockById(1L)).thenReturn(Optional.of(cardiology));
+        when(queueEngine.claimNext(1L)).thenReturn(null);
+
+        assertNull(patientService.callNextPatient(1L));
+        verify(patientRepository, never()).lockByIdAndStatusIn(anyLong(), anyCollection());
+        verify(patientRepository, never()).saveAll(anyList());
+        verify(queueEngine, never()).evict(anyLong());
+    }
+
+    @Test
+    void callNextPatient_WhilePatientIsServed_ShouldReturnNull() {
+        when(queueRepository.lockById(1L)).thenReturn(Optional.of(cardiology));
+        when(patientRepository.existsByQueueIdAndStatusAndCounterIsNull(1L, Patient.PatientStatus.SERVING)).thenReturn(true);
+
+        assertNull(patientService.callNextPatient(1L));
+        verify(queueEngine, never()).claimNext(anyLong());
+        verify(patientRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void callNextPatient_AtCounter_ShouldServePatientWhileOtherCountersAreBusy() {
+        // Arrange
+        ServiceCounter desk = counter(7L, true);
+        Patient patient = waitingPatient(5L, 1, Patient.PatientStatus.WAITING);
+        when(counterRepository.lockByIdAndQueueId(7L, 1L)).thenReturn(Optional.of(desk));
+        when(patientRepository.existsByCounterIdAndStatus(7L, Patient.PatientStatus.SERVING)).thenReturn(false);
+        when(queueEngine.claimNextForCounter(1L)).thenReturn(5L);
+        when(patientRepository.lockByIdAndStatusIn(eq(5L), anyCollection())).thenReturn(Optional.of(patient));
+
+        // Act
+        PatientDTO result = patientService.callNextPatient(1L, 7L);
+
+        // Assert
+        assertEquals(5L, result.getId());
+        assertEquals(Patient.PatientStatus.SERVING, result.getStatus());
+        assertEquals(7L, result.getCounterId());
+        assertEquals("Desk 7", result.getCounterName());
+        assertSame(desk, patient.getCounter());
+        verify(queueEngine, never()).claimNext(anyLong());
+    }
+
+    @Test
+    void callNextPatient_AtBusyCounter_ShouldReturnNull() {
+        when(counterRepository.lockByIdAndQueueId(7L, 1L)).thenReturn(Optional.of(counter(7L, true)));
+        when(patientRepository.existsByCounterIdAndStatus(7L, Patient.PatientStatus.SERVING)).thenReturn(true);
+
+        assertNull(patientService.callNextPatient(1L, 7L));
+        verify(queueEngine, never()).claimNextForCounter(anyLong());
+    }
+
+    @Test
+    void callNextPatient_AtClosedCounter_ShouldBeRejected() {
+        when(counterRepository.lockByIdAndQueueId(7L, 1L)).thenReturn(Optional.of(counter(7L, false)));
+
+        assertThrows(IllegalArgumentException.class, () -> patientService.callNextPatient(1L, 7L));
+        verify(queueEngine, never()).claimNextForCounter(anyLong());
+    }
+
+    @Test
+    void updatePatientStatus_ToServingAtCounter_ShouldOnlyDemotePatientAtSameCounter() {
+        // Arrange
+        ServiceCounter desk = counter(7L, true);
+        Patient patient = waitingPatient(5L, 3, Patient.PatientStatus.NOTIFIED);
+        Patient sameDesk = waitingPatient(6L, 1, Patient.PatientStatus.SERVING);
+        sameDesk.setCounter(desk);
+        Patient otherDesk = waitingPatient(8L, 2, Patient.PatientStatus.SERVING);
+        otherDesk.setCounter(counter(9L, true));
+        when(patientRepository.findById(5L)).thenReturn(Optional.of(patient));
+        when(counterRepository.lockByIdAndQueueId(7L, 1L)).thenReturn(Optional.of(desk));
+        when(patientRepository.findByCounterIdAndStatus(7L, Patient.PatientStatus.SERVING))
+                .thenReturn(Collections.singletonList(sameDesk));
+        PatientStatusUpdateDTO statusUpdate = new PatientStatusUpdateDTO(Patient.PatientStatus.SERVING);
+        statusUpdate.setCounterId(7L);
+
+        // Act
+        PatientDTO result = patientService.updatePatientStatus(5L, statusUpdate);
+
+        // Assert
+        assertEquals(7L, result.getCounterId());
+        assertEquals(Patient.PatientStatus.WAITING, sameDesk.getStatus());
+        assertNull(sameDesk.getCounter());
+        assertEquals(Patient.PatientStatus.SERVING, otherDesk.getStatus());
+        verify(patientRepository).saveAll(Arrays.asList(sameDesk, patient));
+    }
+
+    @Test
+    void updatePatientStatus_ToServing_ShouldNotifyNextWaitingPatientsFromDatabase() {
+        // Arrange
+        Patient patient = waitingPatient(5L, 1, Patient.PatientStatus.NOTIFIED);
+        Patient next = waitingPatient(6L, 2, Patient.PatientStatus.WAITING);
+        when(patientRepository.findById(5L)).thenReturn(Optional.of(patient));
+        when(queueRepository.lockById(1L)).thenReturn(Optional.of(cardiology));
+        when(patientRepository.lockNextWaitingByQueueId(1L, 2)).thenReturn(Collections.singletonList(next));
+
+        // Act
+        patientService.updatePatientStatus(5L, new PatientStatusUpdateDTO(Patient.PatientStatus.SERVING));
+
+        // Assert
+        assertEquals(Patient.PatientStatus.NOTIFIED, next.getStatus());
+        verify(notificationOutbox).enqueueStatusNotification(next);
+        verify(patientRepository).saveAll(Arrays.asList(patient, next));
+    }
+
+    private ServiceCounter counter(Long id, boolean open) {
+        ServiceCounter counter = new ServiceCounter();
+        counter.setId(id);
+        counter.setName("Desk " + id);
+        counter.setQueue(cardiology);
+        counter.setOpen(open);
+        return counter;
+    }
+
+    private Patient waitingPatient(Long id, int position, Patient.PatientStatus status) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setName("Patient " + id);
+        patient.setQueue(cardiology);
+        patient.setStatus(status);
+        patient.setQueuePosition(position);
+        patient.setOrderKey(Patient.orderKeyFor(position));
+        return patient;
+    }
+
+    private PatientDTO registration(String name, Long queueId, String qrCodeId) {
+        PatientDTO patient = new PatientDTO();
+        patient.setName(name);
+        patient.setQueueId(queueId);
+        patient.setQrCodeId(qrCodeId);
+        return patient;
+    }
+}
@@ -0,0 +1,57 @@
+package com.hospital.queue.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatientSessionTokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T09:00:00Z");
+
+    private final PatientSessionTokenService tokens = tokens("secret", NOW);
+
+    @Test
+    void verify_ShouldReturnPatientOfIssuedToken() {
+        String token = tokens.issue(42L);
+
+        assertEquals(42L, tokens.verify(token));
+        // Another node with the same secret accepts it too
+        assertEquals(42L, tokens("secret", NOW).verify(token));
+    }
+
+    @Test
+    void verify_WithTamperedToken_ShouldReject() {
+        String token = tokens.issue(42L);
+
+        assertNull(tokens.verify("43" + token.substring(2)));
+        assertNull(tokens("other-secret", NOW).verify(token));
+        assertNull(tokens.verify("not-a-token"));
+        assertNull(tokens.verify(null));
+    }
+
+    @Test
+    void verify_AfterExpiry_ShouldReject() {
+        String token = tokens.issue(42L);
+
+        assertNull(tokens("secret", NOW.plus(Duration.ofHours(25))).verify(token));
+    }
+
+    @Test
+    void constructor_WithoutSecretOnSeveralNodes_ShouldFailStartup() {
+        assertThrows(IllegalStateException.class, () -> new PatientSessionTokenService("", 24, "relay", "local"));
+        assertThrows(IllegalStateException.class, () -> new PatientSessionTokenService("", 24, "simple", "postgres"));
+
+        // A single node may fall back to a random key
+        assertNotNull(new PatientSessionTokenService("", 24, "simple", "local").issue(42L));
+        assertNotNull(new PatientSessionTokenService("secret", 24, "relay", "postgres").issue(42L));
+    }
+
+    private PatientSessionTokenService tokens(String secret, Instant now) {
+        return new PatientSessionTokenService(secret, Duration.ofHours(24), Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,125 @@
+package com.hospital.queue.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PushNotificationDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakePushGateway gateway = new FakePushGateway();
+    private final DeviceTokenPruner deviceTokenPruner = mock(DeviceTokenPruner.class);
+    private PushNotificationDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    void submit_ShouldDeliverInBatchesAndHandleResultsPerToken() throws Exception {
+        gateway.failingIndex = 1;
+        // Hold the only in-flight slot so the following messages accumulate into one batch
+        gateway.holdNextBatch = true;
+        dispatcher = start(100, 500, 1);
+
+        assertTrue(dispatcher.submit(1L, "token-0", message("token-0")));
+        awaitBatches(1);
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(dispatcher.submit(1L, "token-" + i, message("token-" + i)));
+        }
+        gateway.release();
+
+        awaitBatches(2);
+        assertEquals(3, gateway.batchSizes.get(1).intValue());
+        awaitCount("push.deliveries.failed", 1.0);
+        awaitCount("push.deliveries.delivered", 3.0);
+        // The failed token was reported as unregistered
+        verify(deviceTokenPruner).markForPruning(1L, "token-2");
+    }
+
+    @Test
+    void submit_WhenSaturated_ShouldRejectInsteadOfBlocking() throws Exception {
+        gateway.holdNextBatch = true;
+        dispatcher = start(2, 500, 1);
+
+        assertTrue(dispatcher.submit(1L, "token-0", message("token-0")));
+        awaitBatches(1);
+        assertTrue(dispatcher.submit(1L, "token-1", message("token-1")));
+        assertTrue(dispatcher.submit(1L, "token-2", message("token-2")));
+
+        assertFalse(dispatcher.submit(1L, "token-3", message("token-3")));
+        assertEquals(1.0, meterRegistry.counter("push.deliveries.rejected").count());
+    }
+
+    private PushNotificationDispatcher start(int capacity, int batchSize, int maxInFlight) {
+        PushNotificationDispatcher started = new PushNotificationDispatcher(gateway, deviceTokenPruner, meterRegistry, capacity, batchSize, maxInFlight);
+        started.start();
+        return started;
+    }
+
+    private Message message(String token) {
+        return Message.builder().setToken(token).putData("token", token).build();
+    }
+
+    private void awaitBatches(int count) throws InterruptedException {
+        for (int i = 0; i < 200 && gateway.batchSizes.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(gateway.batchSizes.size() >= count, "Expected " + count + " batches");
+    }
+
+    private void awaitCount(String counter, double expected) throws InterruptedException {
+        for (int i = 0; i < 200 && meterRegistry.counter(counter).count() < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, meterRegistry.counter(counter).count());
+    }
+
+    /**
+     * Local stand-in for FCM: records batch sizes and fails the message at a given index of each batch.
+     */
+    private static class FakePushGateway implements PushGateway {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private volatile int failingIndex = -1;
+        private volatile boolean holdNextBatch;
+        private volatile SettableApiFuture<List<PushResult>> held;
+        private volatile List<PushResult> heldResults;
+
+        @Override
+        public ApiFuture<List<PushResult>> sendAll(List<Message> messages) {
+            List<PushResult> results = new ArrayList<>();
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(i == failingIndex
+                        ? PushResult.failure(MessagingErrorCode.UNREGISTERED, "Requested entity was not found.")
+                        : PushResult.success("message-" + batchSizes.size() + "-" + i));
+            }
+
+            SettableApiFuture<List<PushResult>> future = SettableApiFuture.create();
+            if (holdNextBatch) {
+                holdNextBatch = false;
+                held = future;
+                heldResults = results;
+            } else {
+                future.set(results);
+            }
+            batchSizes.add(messages.size());
+            return future;
+        }
+
+        private void release() {
+            held.set(heldResults);
+        }
+    }
+}
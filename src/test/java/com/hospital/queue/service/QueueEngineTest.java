@@ -0,0 +1,251 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.CacheInvalidationDTO;
+import com.hospital.queue.model.Patient;
+import com.hospital.queue.repository.ActivePatientProjection;
+import com.hospital.queue.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class QueueEngineTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private MessageBackplane backplane;
+
+    @InjectMocks
+    private QueueEngine queueEngine;
+
+    @BeforeEach
+    void setUp() {
+        when(patientRepository.findActiveByQueueIdAndStatusIn(eq(1L), anyList())).thenReturn(Arrays.asList(
+                projection(10L, Patient.PatientStatus.WAITING, 3),
+                projection(11L, Patient.PatientStatus.WAITING, 1),
+                projection(12L, Patient.PatientStatus.SERVING, 0)));
+    }
+
+    @Test
+    void waitingPatientIds_ShouldBeOrderedByQueuePosition() {
+        assertEquals(Arrays.asList(11L, 10L), queueEngine.waitingPatientIds(1L, 5));
+        assertEquals(Collections.singletonList(11L), queueEngine.waitingPatientIds(1L, 1));
+        assertEquals(Collections.singletonList(12L), queueEngine.servingPatientIds(1L));
+    }
+
+    @Test
+    void track_ShouldMovePatientBetweenStatuses() {
+        queueEngine.track(1L, 11L, Patient.PatientStatus.SERVING, 1L);
+        queueEngine.track(1L, 12L, Patient.PatientStatus.SERVED, 0L);
+
+        assertEquals(Collections.singletonList(10L), queueEngine.waitingPatientIds(1L, 5));
+        assertEquals(Collections.singletonList(11L), queueEngine.servingPatientIds(1L));
+        assertEquals(0, queueEngine.count(1L, Patient.PatientStatus.NOTIFIED));
+    }
+
+    @Test
+    void claimNext_ShouldNotClaimWhileAPatientIsServed() {
+        assertNull(queueEngine.claimNext(1L));
+        assertEquals(Arrays.asList(11L, 10L), queueEngine.waitingPatientIds(1L, 5));
+    }
+
+    @Test
+    void claimNext_ShouldTakeFirstNotifiedOrWaitingPatientOnce() {
+        queueEngine.track(1L, 12L, Patient.PatientStatus.SERVED, 0L);
+        queueEngine.track(1L, 10L, Patient.PatientStatus.NOTIFIED, 3L);
+
+        assertEquals(11L, queueEngine.claimNext(1L));
+        assertEquals(Collections.singletonList(11L), queueEngine.servingPatientIds(1L));
+        assertNull(queueEngine.claimNext(1L));
+
+        queueEngine.track(1L, 11L, Patient.PatientStatus.SERVED, 1L);
+        assertEquals(10L, queueEngine.claimNext(1L));
+    }
+
+    @Test
+    void claimNextForCounter_ShouldClaimWhileOtherPatientsAreServed() {
+        assertEquals(11L, queueEngine.claimNextForCounter(1L));
+        assertEquals(10L, queueEngine.claimNextForCounter(1L));
+        assertNull(queueEngine.claimNextForCounter(1L));
+        assertEquals(3, queueEngine.count(1L, Patient.PatientStatus.SERVING));
+    }
+
+    @Test
+    void claimNext_WithConcurrentCallers_ShouldClaimOnePatientOnce() throws Exception {
+        queueEngine.track(1L, 12L, Patient.PatientStatus.SERVED, 0L);
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> claims = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            claims.add(executor.submit(() -> {
+                start.await();
+                return queueEngine.claimNext(1L);
+            }));
+        }
+        start.countDown();
+
+        List<Long> claimed = new ArrayList<>();
+        for (Future<Long> claim : claims) {
+            Long patientId = claim.get(5, TimeUnit.SECONDS);
+            if (patientId != null) {
+                claimed.add(patientId);
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(Collections.singletonList(11L), claimed);
+    }
+
+    @Test
+    void callablePatientIds_ShouldMergeNotifiedAndWaitingInOrder() {
+        queueEngine.track(1L, 13L, Patient.PatientStatus.NOTIFIED, 2L);
+
+        assertEquals(Arrays.asList(11L, 13L, 10L), queueEngine.callablePatientIds(1L, 5));
+        assertEquals(Arrays.asList(11L, 13L), queueEngine.callablePatientIds(1L, 2));
+    }
+
+    @Test
+    void callableNeighbours_ShouldSkipTheGivenPatient() {
+        queueEngine.track(1L, 13L, Patient.PatientStatus.NOTIFIED, 2L);
+
+        assertEquals(13L, queueEngine.previousCallablePatientId(1L, 10L, null));
+        assertEquals(11L, queueEngine.previousCallablePatientId(1L, 10L, 13L));
+        assertNull(queueEngine.previousCallablePatientId(1L, 11L, null));
+        assertEquals(10L, queueEngine.nextCallablePatientId(1L, 11L, 13L));
+        assertNull(queueEngine.callableOrderKey(1L, 12L));
+        assertEquals(2L, queueEngine.callableOrderKey(1L, 13L));
+    }
+
+    @Test
+    void crowdedQueueIds_ShouldReportQueuesWithoutRoomBetweenPatients() {
+        queueEngine.track(1L, 13L, Patient.PatientStatus.WAITING, 2L);
+
+        assertEquals(Collections.singletonList(1L), queueEngine.crowdedQueueIds(2));
+        assertEquals(Collections.emptyList(), queueEngine.crowdedQueueIds(1));
+    }
+
+    @Test
+    void queueState_ShouldBeLoadedOnceUntilEvicted() {
+        queueEngine.waitingPatientIds(1L, 1);
+        queueEngine.servingPatientIds(1L);
+        verify(patientRepository, times(1)).findActiveByQueueIdAndStatusIn(eq(1L), anyList());
+
+        queueEngine.evict(1L);
+        queueEngine.waitingPatientIds(1L, 1);
+        verify(patientRepository, times(2)).findActiveByQueueIdAndStatusIn(eq(1L), anyList());
+    }
+
+    @Test
+    void track_InCommittedTransaction_ShouldInvalidateOtherNodesOncePerQueue() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            queueEngine.track(1L, 11L, Patient.PatientStatus.SERVING, 1L);
+            queueEngine.track(1L, 10L, Patient.PatientStatus.NOTIFIED, 3L);
+            verifyNoInteractions(backplane);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        ArgumentCaptor<CacheInvalidationDTO> invalidation = ArgumentCaptor.forClass(CacheInvalidationDTO.class);
+        verify(backplane, times(1)).invalidate(invalidation.capture());
+        assertEquals(CacheInvalidationDTO.Cache.QUEUE_ENGINE, invalidation.getValue().getCache());
+        assertEquals(1L, invalidation.getValue().getId());
+    }
+
+    @Test
+    void forget_InCommittedTransaction_ShouldDropQueueHereAndOnOtherNodes() {
+        queueEngine.waitingPatientIds(1L, 1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            queueEngine.forget(1L);
+            verifyNoInteractions(backplane);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        queueEngine.waitingPatientIds(1L, 1);
+        verify(patientRepository, times(2)).findActiveByQueueIdAndStatusIn(eq(1L), anyList());
+        verify(backplane).invalidate(argThat(invalidation -> invalidation.getId().equals(1L)
+                && invalidation.getCache() == CacheInvalidationDTO.Cache.QUEUE_ENGINE));
+    }
+
+    @Test
+    void track_InRolledBackTransaction_ShouldReloadQueue() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            queueEngine.track(1L, 11L, Patient.PatientStatus.SERVING, 1L);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(Arrays.asList(11L, 10L), queueEngine.waitingPatientIds(1L, 5));
+        verifyNoInteractions(backplane);
+    }
+
+    @Test
+    void onCacheInvalidation_FromOtherNode_ShouldReloadQueue() {
+        queueEngine.waitingPatientIds(1L, 1);
+
+        queueEngine.onCacheInvalidation(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.QUEUE_ENGINE, 1L));
+        queueEngine.onCacheInvalidation(new CacheInvalidationDTO(CacheInvalidationDTO.Cache.DEVICE_TOKENS, null));
+        queueEngine.waitingPatientIds(1L, 1);
+
+        verify(patientRepository, times(2)).findActiveByQueueIdAndStatusIn(eq(1L), anyList());
+    }
+
+    private ActivePatientProjection projection(Long id, Patient.PatientStatus status, long orderKey) {
+        return new ActivePatientProjection() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getQueueId() {
+                return 1L;
+            }
+
+            @Override
+            public Patient.PatientStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Long getOrderKey() {
+                return orderKey;
+            }
+        };
+    }
+}
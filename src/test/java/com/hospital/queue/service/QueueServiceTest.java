@@ -5,20 +5,25 @@ import com.hospital.queue.dto.QueueDetailsDTO;
 import com.hospital.queue.exception.ResourceNotFoundException;
 import com.hospital.queue.model.Department;
 import com.hospital.queue.model.Patient;
+import com.hospital.queue.model.PatientHistory;
 import com.hospital.queue.model.Queue;
 import com.hospital.queue.repository.DepartmentRepository;
+import com.hospital.queue.repository.PatientHistoryRepository;
 import com.hospital.queue.repository.PatientRepository;
 import com.hospital.queue.repository.QueueRepository;
+import com.hospital.queue.repository.StatusCountProjection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,12 +43,21 @@ public class QueueServiceTest {
     @Mock
     private PatientRepository patientRepository;
 
+    @Mock
+    private PatientHistoryRepository patientHistoryRepository;
+
     @Mock
     private QRCodeService qrCodeService;
 
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private QueueEngine queueEngine;
+
+    @Mock
+    private DeviceTokenCache deviceTokenCache;
+
     @InjectMocks
     private QueueService queueService;
 
@@ -100,8 +114,8 @@ public class QueueServiceTest {
     @Test
     void getAllQueues_ShouldReturnAllQueues() {
         // Arrange
-        List<Queue> queues = Arrays.asList(queue);
-        when(queueRepository.findAll()).thenReturn(queues);
+        List<QueueDTO> queues = Arrays.asList(queueListItem());
+        when(queueRepository.findAllAsDto()).thenReturn(queues);
 
         // Act
         List<QueueDTO> result = queueService.getAllQueues();
@@ -115,8 +129,8 @@ public class QueueServiceTest {
     @Test
     void getQueuesByDepartment_ShouldReturnQueuesForDepartment() {
         // Arrange
-        List<Queue> queues = Arrays.asList(queue);
-        when(queueRepository.findByDepartmentId(1L)).thenReturn(queues);
+        List<QueueDTO> queues = Arrays.asList(queueListItem());
+        when(queueRepository.findAsDtoByDepartmentId(1L)).thenReturn(queues);
 
         // Act
         List<QueueDTO> result = queueService.getQueuesByDepartment(1L);
@@ -147,15 +161,18 @@ public class QueueServiceTest {
         
         List<Patient> servedPatients = new ArrayList<>();
         
-        when(patientRepository.findByQueueIdAndStatusOrderByQueuePosition(1L, Patient.PatientStatus.SERVING))
+        when(patientRepository.countByQueueIdGroupByStatus(1L)).thenReturn(Arrays.asList(
+                statusCount(Patient.PatientStatus.WAITING, 1L),
+                statusCount(Patient.PatientStatus.SERVING, 1L)));
+        when(patientRepository.findWithCounterByQueueIdAndStatusOrderByOrderKey(1L, Patient.PatientStatus.SERVING))
                 .thenReturn(servingPatients);
-        when(patientRepository.findByQueueIdAndStatusOrderByQueuePosition(1L, Patient.PatientStatus.WAITING))
+        when(patientRepository.findByQueueIdAndStatusInOrderByOrderKey(eq(1L), anyList()))
                 .thenReturn(waitingPatients);
-        when(patientRepository.findByQueueIdAndStatusInOrderByQueuePosition(eq(1L), anyList()))
+        when(patientRepository.findByQueueIdAndStatusOrderByIdDesc(eq(1L), any(Patient.PatientStatus.class), any(Pageable.class)))
                 .thenReturn(servedPatients);
 
         // Act
-        QueueDetailsDTO result = queueService.getQueueDetails(1L);
+        QueueDetailsDTO result = queueService.getQueueDetails(1L, true);
 
         // Assert
         assertEquals(1L, result.getId());
@@ -166,6 +183,85 @@ public class QueueServiceTest {
         assertNotNull(result.getCurrentPatient());
         assertEquals(1, result.getWaitingPatients().size());
         assertEquals(0, result.getServedPatients().size());
+        assertEquals(1, result.getWaitingCount());
+        assertEquals(0, result.getServedCount());
+        assertNull(result.getServedNextCursor());
+    }
+
+    @Test
+    void getQueueDetails_WithStatusFilterAndCursor_ShouldOnlyLoadRequestedPage() {
+        // Arrange
+        when(queueRepository.findById(1L)).thenReturn(Optional.of(queue));
+        when(patientRepository.countByQueueIdGroupByStatus(1L)).thenReturn(Arrays.asList(
+                statusCount(Patient.PatientStatus.SERVED, 120L)));
+        
+        List<Patient> servedPage = new ArrayList<>();
+        for (long id = 99; id > 97; id--) {
+            Patient served = new Patient();
+            served.setId(id);
+            served.setStatus(Patient.PatientStatus.SERVED);
+            servedPage.add(served);
+        }
+        when(patientRepository.findByQueueIdAndStatusAndIdLessThanOrderByIdDesc(
+                eq(1L), eq(Patient.PatientStatus.SERVED), eq(100L), any(Pageable.class)))
+                .thenReturn(servedPage);
+
+        // Act
+        QueueDetailsDTO result = queueService.getQueueDetails(1L, false,
+                EnumSet.of(Patient.PatientStatus.SERVED), 100L, null, 2, false);
+
+        // Assert
+        assertEquals(2, result.getServedPatients().size());
+        assertEquals(98L, result.getServedNextCursor());
+        assertEquals(120, result.getServedCount());
+        assertNull(result.getWaitingPatients());
+        assertNull(result.getCancelledPatients());
+        verify(patientRepository, never()).findByQueueIdAndStatusInOrderByOrderKey(anyLong(), anyList());
+        verify(patientRepository, never()).findByQueueIdOrderByQueuePosition(anyLong());
+    }
+
+    @Test
+    void getQueueDetails_WithHistory_ShouldMergeArchivedPatientsById() {
+        // Arrange
+        when(queueRepository.findById(1L)).thenReturn(Optional.of(queue));
+        when(patientRepository.countByQueueIdGroupByStatus(1L)).thenReturn(Arrays.asList(
+                statusCount(Patient.PatientStatus.SERVED, 2L)));
+        when(patientHistoryRepository.countByQueueIdGroupByStatus(1L)).thenReturn(Arrays.asList(
+                statusCount(Patient.PatientStatus.SERVED, 500L)));
+        
+        List<Patient> livePage = new ArrayList<>();
+        for (long id : new long[] {90, 70}) {
+            Patient served = new Patient();
+            served.setId(id);
+            served.setStatus(Patient.PatientStatus.SERVED);
+            livePage.add(served);
+        }
+        List<PatientHistory> archivedPage = new ArrayList<>();
+        for (long id : new long[] {80, 60}) {
+            PatientHistory archived = new PatientHistory();
+            archived.setId(id);
+            archived.setQueueId(1L);
+            archived.setStatus(Patient.PatientStatus.SERVED);
+            archivedPage.add(archived);
+        }
+        when(patientRepository.findByQueueIdAndStatusOrderByIdDesc(
+                eq(1L), eq(Patient.PatientStatus.SERVED), any(Pageable.class)))
+                .thenReturn(livePage);
+        when(patientHistoryRepository.findByQueueIdAndStatusOrderByIdDesc(
+                eq(1L), eq(Patient.PatientStatus.SERVED), any(Pageable.class)))
+                .thenReturn(archivedPage);
+
+        // Act
+        QueueDetailsDTO result = queueService.getQueueDetails(1L, false,
+                EnumSet.of(Patient.PatientStatus.SERVED), null, null, 3, true);
+
+        // Assert
+        assertEquals(3, result.getServedPatients().size());
+        assertEquals(90L, result.getServedPatients().get(0).getId());
+        assertEquals(80L, result.getServedPatients().get(1).getId());
+        assertEquals(70L, result.getServedPatients().get(2).getId());
+        assertEquals(70L, result.getServedNextCursor());
+        assertEquals(502, result.getServedCount());
     }
 
     @Test
@@ -252,12 +348,17 @@ public class QueueServiceTest {
     void deleteQueue_ShouldDeleteQueue() {
         // Arrange
         when(queueRepository.existsById(1L)).thenReturn(true);
+        when(patientRepository.bulkDeleteByQueueId(1L)).thenReturn(3);
 
         // Act
         queueService.deleteQueue(1L);
 
         // Assert
-        verify(queueRepository).deleteById(1L);
+        verify(patientRepository).bulkDeleteByQueueId(1L);
+        verify(queueRepository).bulkDeleteById(1L);
+        verify(queueRepository).deleteEventVersionById(1L);
+        verify(queueEngine).forget(1L);
+        verify(deviceTokenCache).invalidateAll();
     }
 
     @Test
@@ -278,4 +379,22 @@ public class QueueServiceTest {
             queueService.getQueueDetails(null);
         });
     }
+
+    private QueueDTO queueListItem() {
+        return new QueueDTO(1L, "Cardiology Queue", "Queue for cardiology department", 1L, "abc123");
+    }
+
+    private StatusCountProjection statusCount(Patient.PatientStatus status, Long count) {
+        return new StatusCountProjection() {
+            @Override
+            public Patient.PatientStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Long getCount() {
+                return count;
+            }
+        };
+    }
 }
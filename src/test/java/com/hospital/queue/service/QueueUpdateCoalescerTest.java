@@ -0,0 +1,121 @@
+package com.hospital.queue.service;
+
+import com.hospital.queue.dto.QueueEventDTO;
+import com.hospital.queue.dto.QueueUpdateDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class QueueUpdateCoalescerTest {
+
+    @Mock
+    private MessageBackplane backplane;
+
+    @Mock
+    private QueueVersionAllocator versionAllocator;
+
+    private SimpleMeterRegistry meterRegistry;
+    private QueueUpdateCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new QueueUpdateCoalescer(backplane, versionAllocator, meterRegistry, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void submit_ShouldPublishOneVersionedMessagePerWindow() {
+        // Versions 1-4 were taken by another node
+        when(versionAllocator.allocate(1L, 3)).thenReturn(7L);
+
+        coalescer.submit(event(QueueEventDTO.EventType.PATIENT_JOINED));
+        coalescer.submit(event(QueueEventDTO.EventType.STATUS_CHANGED));
+        coalescer.submit(event(QueueEventDTO.EventType.POSITION_CHANGED));
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(backplane, timeout(1000).times(1)).publish(eq("/topic/queue/1"), payload.capture());
+
+        QueueUpdateDTO update = (QueueUpdateDTO) payload.getValue();
+        assertEquals(5L, update.getFromVersion());
+        assertEquals(7L, update.getToVersion());
+        assertEquals(3, update.getEvents().size());
+        assertEquals(6L, update.getEvents().get(1).getVersion());
+        assertEquals(2.0, meterRegistry.counter("queue.updates.merged").count());
+    }
+
+    @Test
+    void submit_WithResync_ShouldCollapseToSingleEvent() {
+        when(versionAllocator.allocate(1L, 1)).thenReturn(1L);
+
+        coalescer.submit(event(QueueEventDTO.EventType.STATUS_CHANGED));
+        coalescer.submit(event(QueueEventDTO.EventType.QUEUE_UPDATED));
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(backplane, timeout(1000).times(1)).publish(eq("/topic/queue/1"), payload.capture());
+
+        QueueUpdateDTO update = (QueueUpdateDTO) payload.getValue();
+        assertEquals(1, update.getEvents().size());
+        assertEquals(QueueEventDTO.EventType.QUEUE_UPDATED, update.getEvents().get(0).getType());
+    }
+
+    @Test
+    void submit_InTransaction_ShouldTakeVersionsBeforeCommitAndPublishAfter() {
+        when(versionAllocator.allocate(1L, 2)).thenReturn(2L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            coalescer.submit(event(QueueEventDTO.EventType.PATIENT_JOINED));
+            coalescer.submit(event(QueueEventDTO.EventType.STATUS_CHANGED));
+            verifyNoInteractions(versionAllocator);
+
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+            verify(versionAllocator).allocate(1L, 2);
+            verifyNoInteractions(backplane);
+
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(backplane).publish(eq("/topic/queue/1"), payload.capture());
+        assertEquals(1L, ((QueueUpdateDTO) payload.getValue()).getFromVersion());
+    }
+
+    @Test
+    void submit_InRolledBackTransaction_ShouldTakeNoVersions() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            coalescer.submit(event(QueueEventDTO.EventType.PATIENT_JOINED));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verifyNoInteractions(versionAllocator, backplane);
+    }
+
+    private QueueEventDTO event(QueueEventDTO.EventType type) {
+        return new QueueEventDTO(1L, type);
+    }
+}